@@ -0,0 +1,22 @@
+package com.aleerant.tnssync.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate
+ * (gc.alloc.rate.norm: bytes per operation) to the throughput. An optional
+ * argument is a regular expression selecting the benchmarks to run.
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : TnsSyncBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,110 @@
+package com.aleerant.tnssync.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.aleerant.tnssync.TnsEntry;
+import com.aleerant.tnssync.TnsSyncEntry;
+
+/*
+ * Generates synthetic but realistic net service data: single address
+ * descriptors, failover address lists, load balanced RAC SCAN addresses,
+ * SID and SERVICE_NAME connect data. The same seed gives the same data.
+ */
+public final class DescriptorGenerator {
+	private static final String AUTO_SECTION_HEADER = "### AUTO-GENERATED SECTION ##########################################\n"
+			+ "#This is an automatically generated section, please do not modify it!\n"
+			+ "#Edit tnssync.ora file instead of this!\n" + "#Modified: 2018-06-14 12:15:17.072\n\n";
+
+	private final Random mRandom;
+
+	public DescriptorGenerator(long seed) {
+		mRandom = new Random(seed);
+	}
+
+	public static String netServiceName(int i) {
+		return "DB" + i;
+	}
+
+	public String descriptor(int i) {
+		String service = "SVC" + i + (mRandom.nextBoolean() ? ".EXAMPLE.COM" : "");
+		String connectData = mRandom.nextInt(5) == 0 ? "(SID=" + netServiceName(i) + ")"
+				: "(SERVER=DEDICATED)(SERVICE_NAME=" + service + ")";
+		switch (mRandom.nextInt(3)) {
+		case 0:
+			return "(DESCRIPTION=(ADDRESS=(PROTOCOL=TCP)(HOST=" + host(i) + ")(PORT=1521))(CONNECT_DATA="
+					+ connectData + "))";
+		case 1:
+			return "(DESCRIPTION=(ADDRESS_LIST=(FAILOVER=ON)(ADDRESS=(PROTOCOL=TCP)(HOST=" + host(i)
+					+ ")(PORT=1521))(ADDRESS=(PROTOCOL=TCP)(HOST=" + host(i + 1) + ")(PORT=1521)))(CONNECT_DATA="
+					+ connectData + "))";
+		default:
+			return "(DESCRIPTION=(CONNECT_TIMEOUT=5)(TRANSPORT_CONNECT_TIMEOUT=3)(RETRY_COUNT=3)"
+					+ "(ADDRESS_LIST=(LOAD_BALANCE=ON)(ADDRESS=(PROTOCOL=TCP)(HOST=scan" + (i % 50)
+					+ ".example.com)(PORT=1521)))(CONNECT_DATA=" + connectData + "))";
+		}
+	}
+
+	private String host(int i) {
+		return "dbhost" + (i % 997) + ".dc" + mRandom.nextInt(4) + ".example.com";
+	}
+
+	/*
+	 * net service data as returned by LdapHandler.queryTnsEntryMap
+	 */
+	public Map<String, TnsEntry> ldapData(int size) {
+		Map<String, TnsEntry> result = new HashMap<String, TnsEntry>(size * 2);
+		for (int i = 0; i < size; i++) {
+			TnsEntry tnsEntry = new TnsEntry(netServiceName(i), descriptor(i));
+			result.put(tnsEntry.getNetServiceName(), tnsEntry);
+		}
+		return result;
+	}
+
+	/*
+	 * tnssync.ora entries, every fourth one in the ALIAS = NAME form
+	 */
+	public static List<TnsSyncEntry> tnsSyncEntries(int size) {
+		List<TnsSyncEntry> result = new ArrayList<TnsSyncEntry>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(i % 4 == 0 ? new TnsSyncEntry("ALIAS" + i, netServiceName(i))
+					: new TnsSyncEntry(netServiceName(i), netServiceName(i)));
+		}
+		return result;
+	}
+
+	public static void writeTnsSyncFile(Path file, List<TnsSyncEntry> entries) throws IOException {
+		try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			w.write("# generated for benchmarks\n");
+			for (TnsSyncEntry entry : entries) {
+				w.write(entry.getEntryName().equals(entry.getNetServiceName()) ? entry.getEntryName()
+						: entry.getTnsSyncEntryFormat());
+				w.write('\n');
+			}
+		}
+	}
+
+	/*
+	 * tnsnames.ora with a multi-line manual entry and the given generated
+	 * entries
+	 */
+	public static void writeTnsNamesFile(Path file, List<TnsEntry> entries) throws IOException {
+		try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			w.write("MANUAL =\n  (DESCRIPTION =\n    (ADDRESS = (PROTOCOL = TCP)(HOST = manual.example.com)(PORT = 1521))\n"
+					+ "    (CONNECT_DATA = (SERVICE_NAME = MANUAL))\n  )\n\n");
+			w.write(AUTO_SECTION_HEADER);
+			for (TnsEntry entry : entries) {
+				w.write(entry.getTnsNamesEntryFormat());
+				w.write('\n');
+			}
+		}
+	}
+}
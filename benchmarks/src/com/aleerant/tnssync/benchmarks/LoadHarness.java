@@ -0,0 +1,345 @@
+package com.aleerant.tnssync.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.LoggerFactory;
+
+import com.aleerant.tnssync.AppFileHandler;
+import com.aleerant.tnssync.LdapHandler;
+import com.aleerant.tnssync.PropertiesHandler;
+import com.aleerant.tnssync.TnsEntry;
+import com.aleerant.tnssync.TnsSyncEngine;
+import com.aleerant.tnssync.TnsSyncEntry;
+import com.aleerant.tnssync.TnsSyncFromLdap;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RDN;
+import com.unboundid.ldap.sdk.schema.Schema;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/*
+ * End-to-end load harness. It starts in-process LDAP servers (UnboundID
+ * in-memory directory) loaded with synthetic orclNetService entries, writes
+ * ldap.ora and tnssync.ora into a temporary TNS_ADMIN directory, and runs the
+ * synchronization several times. Every run is timed phase by phase through
+ * the same public API TnsSyncFromLdap uses, then end to end through
+ * TnsSyncFromLdap.main.
+ *
+ * The servers are listed in DIRECTORY_SERVERS order: "ok", "slow:<MS>" (every
+ * search is delayed), "dead" (connection refused) or "blackhole" (the
+ * connection is accepted by the kernel, but never answered).
+ */
+public class LoadHarness {
+	private static final String[] PHASES = { "config", "read tnssync.ora", "ldap connect+search",
+			"read tnsnames.ora", "diff", "write+move", "end-to-end" };
+
+	// the part of the Oracle Net schema used by tnssync
+	private static final Schema ORACLE_NET_SCHEMA = new Schema(new Entry("cn=schema",
+			new Attribute("attributeTypes",
+					"( 2.16.840.1.113894.7.1.1 NAME 'orclNetDescString' EQUALITY caseIgnoreMatch "
+							+ "SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )"),
+			new Attribute("objectClasses",
+					"( 2.16.840.1.113894.7.2.2 NAME 'orclContext' SUP top STRUCTURAL MUST cn )",
+					"( 2.16.840.1.113894.7.2.3 NAME 'orclNetService' SUP top STRUCTURAL MUST cn "
+							+ "MAY ( orclNetDescString $ description ) )")));
+
+	private final int mEntries, mNames, mRuns;
+	private final String mAdminContext;
+	private final List<String> mServerSpecs;
+	private final boolean mKeepTnsNames;
+	private final List<String> mAppArgs;
+
+	private final List<InMemoryDirectoryServer> mServers = new ArrayList<InMemoryDirectoryServer>();
+	private final List<ServerSocket> mSockets = new ArrayList<ServerSocket>();
+	private final Map<String, List<Long>> mTimings = new LinkedHashMap<String, List<Long>>();
+	private Path mTnsAdminPath;
+
+	public LoadHarness(int entries, int names, int runs, String adminContext, List<String> serverSpecs,
+			boolean keepTnsNames, List<String> appArgs) {
+		mEntries = entries;
+		mNames = names;
+		mRuns = runs;
+		mAdminContext = adminContext;
+		mServerSpecs = serverSpecs;
+		mKeepTnsNames = keepTnsNames;
+		mAppArgs = appArgs;
+		for (String phase : PHASES) {
+			mTimings.put(phase, new ArrayList<Long>());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new Options();
+		options.addOption(Option.builder("n").longOpt("entries").argName("N").hasArg()
+				.desc("Number of orclNetService entries in the directory (default: 10000)").build());
+		options.addOption(Option.builder("m").longOpt("names").argName("N").hasArg()
+				.desc("Number of net service names in tnssync.ora (default: 1000)").build());
+		options.addOption(Option.builder("r").longOpt("runs").argName("N").hasArg()
+				.desc("Number of measured runs (default: 5)").build());
+		options.addOption(Option.builder("c").longOpt("admin_context").argName("DN").hasArg()
+				.desc("Admin context of the entries (default: cn=OracleContext,dc=example,dc=com)").build());
+		options.addOption(Option.builder("s").longOpt("servers").argName("SPEC,...").hasArg()
+				.desc("Directory servers in DIRECTORY_SERVERS order: ok, slow:<MS>, dead or blackhole (default: ok)")
+				.build());
+		options.addOption(Option.builder("k").longOpt("keep_tnsnames")
+				.desc("Keep tnsnames.ora between the runs (measures unchanged runs), by default it is deleted").build());
+		options.addOption(Option.builder("a").longOpt("app_args").argName("ARGS").hasArg()
+				.desc("Additional tnssync arguments, e.g. --app_args=\"-ct 1000 -hc 2\"").build());
+		options.addOption("h", "help", false, "Print this message");
+
+		CommandLine cmd;
+		try {
+			cmd = new DefaultParser().parse(options, args);
+		} catch (ParseException e) {
+			System.err.println(e.getMessage());
+			new HelpFormatter().printHelp("java -cp target/benchmarks.jar " + LoadHarness.class.getName(), options);
+			System.exit(1);
+			return;
+		}
+		if (cmd.hasOption("h")) {
+			new HelpFormatter().printHelp("java -cp target/benchmarks.jar " + LoadHarness.class.getName(), options);
+			return;
+		}
+
+		String appArgs = cmd.getOptionValue("a", "").trim();
+		LoadHarness harness = new LoadHarness(Integer.parseInt(cmd.getOptionValue("n", "10000")),
+				Integer.parseInt(cmd.getOptionValue("m", "1000")), Integer.parseInt(cmd.getOptionValue("r", "5")),
+				cmd.getOptionValue("c", "cn=OracleContext,dc=example,dc=com"),
+				Arrays.asList(cmd.getOptionValue("s", "ok").split(",")), cmd.hasOption("k"),
+				appArgs.isEmpty() ? new ArrayList<String>() : Arrays.asList(appArgs.split("\\s+")));
+		try {
+			harness.run();
+		} finally {
+			harness.shutdown();
+		}
+	}
+
+	public void run() throws Exception {
+		long start = System.nanoTime();
+		String directoryServers = startServers();
+		System.out.printf("%d server(s) started, %d entries loaded in %d ms%n", mServerSpecs.size(), mEntries,
+				(System.nanoTime() - start) / 1000000);
+
+		mTnsAdminPath = Files.createTempDirectory("tnssync-load");
+		writeTnsAdminFiles(directoryServers);
+
+		List<String> args = new ArrayList<String>();
+		args.add("-ta");
+		args.add(mTnsAdminPath.toString());
+		args.addAll(mAppArgs);
+		String[] appArgs = args.toArray(new String[args.size()]);
+
+		for (int run = 0; run < mRuns; run++) {
+			runPhases(appArgs);
+			if (!mKeepTnsNames) {
+				Files.deleteIfExists(mTnsAdminPath.resolve("tnsnames.ora"));
+			}
+			long e2eStart = System.nanoTime();
+			TnsSyncFromLdap.main(appArgs);
+			mTimings.get("end-to-end").add(System.nanoTime() - e2eStart);
+			if (!mKeepTnsNames) {
+				Files.deleteIfExists(mTnsAdminPath.resolve("tnsnames.ora"));
+			}
+		}
+		printReport();
+	}
+
+	/*
+	 * one synchronization, phase by phase
+	 */
+	private void runPhases(String[] appArgs) throws Exception {
+		long t = System.nanoTime();
+		PropertiesHandler properties = new PropertiesHandler(appArgs);
+		silenceLogging();
+		t = record("config", t);
+
+		AppFileHandler fileHandler = new AppFileHandler(properties.getTnsAdminPath());
+		List<TnsSyncEntry> tnsSyncList = fileHandler.getTnsSyncList();
+		t = record("read tnssync.ora", t);
+
+		LdapHandler ldapHandler = new TnsSyncEngine(properties.createSyncConfig())
+				.createLdapHandler(properties.getDirectoryServers(), properties.getDefaultAdminContext());
+		Map<String, TnsEntry> tnsDataFromLdap;
+		try {
+			tnsDataFromLdap = ldapHandler.queryTnsEntryMap(TnsSyncEngine.getUniqueNetServiceNameList(tnsSyncList));
+		} finally {
+			ldapHandler.close();
+		}
+		t = record("ldap connect+search", t);
+
+		List<TnsEntry> tnsEntryListCurrent = fileHandler.getCurrentTnsEntryList();
+		t = record("read tnsnames.ora", t);
+
+		List<TnsEntry> tnsEntryListFromLdap = TnsSyncEngine.createTnsEntryListForTnsSyncEntries(tnsSyncList,
+				tnsDataFromLdap);
+		boolean equal = TnsSyncEngine.equalLists(tnsEntryListFromLdap, tnsEntryListCurrent);
+		t = record("diff", t);
+
+		if (!equal || fileHandler.isCurrentTnsNamesCorrupt()) {
+			fileHandler.writeNetServiceDataToBuildFile(tnsEntryListFromLdap);
+			fileHandler.moveBuidFileToFinal();
+		}
+		record("write+move", t);
+	}
+
+	private long record(String phase, long start) {
+		long now = System.nanoTime();
+		mTimings.get(phase).add(now - start);
+		return now;
+	}
+
+	private void printReport() {
+		System.out.printf("%n%d runs, %d entries in the directory, %d names in tnssync.ora, servers: %s%n", mRuns,
+				mEntries, mNames, mServerSpecs);
+		System.out.printf("%-22s %10s %10s %10s%n", "phase", "min ms", "avg ms", "max ms");
+		for (Map.Entry<String, List<Long>> phase : mTimings.entrySet()) {
+			long min = Long.MAX_VALUE, max = 0, sum = 0;
+			for (long nanos : phase.getValue()) {
+				min = Math.min(min, nanos);
+				max = Math.max(max, nanos);
+				sum += nanos;
+			}
+			int count = phase.getValue().size();
+			System.out.printf("%-22s %10.1f %10.1f %10.1f%n", phase.getKey(), count == 0 ? 0 : min / 1e6,
+					count == 0 ? 0 : sum / 1e6 / count, max / 1e6);
+		}
+	}
+
+	private String startServers() throws Exception {
+		List<Entry> entries = createEntries();
+		StringBuilder directoryServers = new StringBuilder();
+		for (String spec : mServerSpecs) {
+			int port;
+			if (spec.equals("dead")) {
+				try (ServerSocket socket = new ServerSocket(0)) {
+					port = socket.getLocalPort();
+				}
+			} else if (spec.equals("blackhole")) {
+				ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+				mSockets.add(socket);
+				port = socket.getLocalPort();
+			} else if (spec.equals("ok") || spec.startsWith("slow:")) {
+				port = startServer(entries, spec.equals("ok") ? 0 : Long.parseLong(spec.substring(5)));
+			} else {
+				throw new IllegalArgumentException("unknown server type: " + spec);
+			}
+			directoryServers.append(directoryServers.length() == 0 ? "" : ", ").append("localhost:").append(port);
+		}
+		return directoryServers.toString();
+	}
+
+	private int startServer(List<Entry> entries, final long searchDelay) throws LDAPException {
+		InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(mAdminContext);
+		config.setSchema(Schema.mergeSchemas(Schema.getDefaultStandardSchema(), ORACLE_NET_SCHEMA));
+		// directory servers index cn, without it every filter of a batch scans all entries
+		config.setEqualityIndexAttributes("cn");
+		config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("ldap", InetAddress.getLoopbackAddress(),
+				0, null));
+		if (searchDelay > 0) {
+			config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+				@Override
+				public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+					try {
+						Thread.sleep(searchDelay);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+		InMemoryDirectoryServer server = new InMemoryDirectoryServer(config);
+		server.addEntries(entries);
+		server.startListening();
+		mServers.add(server);
+		return server.getListenPort();
+	}
+
+	private List<Entry> createEntries() throws LDAPException {
+		List<Entry> entries = new ArrayList<Entry>(mEntries + 1);
+		DN adminContext = new DN(mAdminContext);
+		Entry context = new Entry(adminContext);
+		context.addAttribute("objectClass", "top", "orclContext", "extensibleObject");
+		RDN rdn = adminContext.getRDN();
+		for (int i = 0; i < rdn.getAttributeNames().length; i++) {
+			context.addAttribute(rdn.getAttributeNames()[i], rdn.getAttributeValues()[i]);
+		}
+		entries.add(context);
+
+		DescriptorGenerator generator = new DescriptorGenerator(42);
+		for (int i = 0; i < mEntries; i++) {
+			String cn = DescriptorGenerator.netServiceName(i);
+			Entry entry = new Entry(new DN(new RDN("cn", cn), adminContext));
+			entry.addAttribute("objectClass", "top", "orclNetService");
+			entry.addAttribute("cn", cn);
+			entry.addAttribute("orclNetDescString", generator.descriptor(i));
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	private void writeTnsAdminFiles(String directoryServers) throws IOException {
+		try (BufferedWriter w = Files.newBufferedWriter(mTnsAdminPath.resolve("ldap.ora"), StandardCharsets.UTF_8)) {
+			w.write("DIRECTORY_SERVERS = (" + directoryServers + ")\n");
+			w.write("DEFAULT_ADMIN_CONTEXT = \"" + mAdminContext + "\"\n");
+			w.write("DIRECTORY_SERVER_TYPE = OID\n");
+		}
+		// names spread over the directory, every 100th is missing from it, every 4th has an alias
+		List<TnsSyncEntry> tnsSyncEntries = new ArrayList<TnsSyncEntry>(mNames);
+		int step = Math.max(1, mEntries / Math.max(1, mNames));
+		for (int i = 0; i < mNames; i++) {
+			String name = DescriptorGenerator.netServiceName(i * step + (i % 100 == 99 ? mEntries : 0));
+			tnsSyncEntries.add(new TnsSyncEntry(i % 4 == 0 ? "ALIAS" + i : name, name));
+		}
+		DescriptorGenerator.writeTnsSyncFile(mTnsAdminPath.resolve("tnssync.ora"), tnsSyncEntries);
+		System.out.printf("TNS_ADMIN: %s%n", mTnsAdminPath.toString());
+	}
+
+	private static void silenceLogging() {
+		Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+		root.setLevel(Level.WARN);
+	}
+
+	public void shutdown() throws IOException {
+		for (InMemoryDirectoryServer server : mServers) {
+			server.shutDown(true);
+		}
+		for (ServerSocket socket : mSockets) {
+			socket.close();
+		}
+		if (mTnsAdminPath != null) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(mTnsAdminPath)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(mTnsAdminPath);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.aleerant.tnssync.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import com.aleerant.tnssync.AppException;
+import com.aleerant.tnssync.AppFileHandler;
+import com.aleerant.tnssync.TnsEntry;
+import com.aleerant.tnssync.TnsSyncEntry;
+import com.aleerant.tnssync.TnsSyncFileMissingException;
+import com.aleerant.tnssync.TnsSyncEngine;
+
+import ch.qos.logback.classic.Logger;
+
+/*
+ * Benchmarks of the parse, build and diff paths of one synchronization.
+ * Every AppFileHandler is created per invocation, so the tnssync.ora file is
+ * parsed every time instead of being served from the modification time cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TnsSyncBenchmark {
+
+	@Param({ "100", "10000", "1000000" })
+	public int size;
+
+	private Path mTnsAdminPath;
+	private List<TnsSyncEntry> mTnsSyncList;
+	private Map<String, TnsEntry> mLdapData;
+	private List<TnsEntry> mTnsEntryList, mTnsEntryListCopy;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+		root.setLevel(ch.qos.logback.classic.Level.OFF);
+
+		DescriptorGenerator generator = new DescriptorGenerator(42);
+		mTnsSyncList = DescriptorGenerator.tnsSyncEntries(size);
+		mLdapData = generator.ldapData(size);
+		mTnsEntryList = TnsSyncEngine.createTnsEntryListForTnsSyncEntries(mTnsSyncList, mLdapData);
+		mTnsEntryListCopy = new ArrayList<TnsEntry>(mTnsEntryList);
+
+		mTnsAdminPath = Files.createTempDirectory("tnssync-bench");
+		DescriptorGenerator.writeTnsSyncFile(mTnsAdminPath.resolve("tnssync.ora"), mTnsSyncList);
+		DescriptorGenerator.writeTnsNamesFile(mTnsAdminPath.resolve("tnsnames.ora"), mTnsEntryList);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		deleteFiles(mTnsAdminPath, "*");
+		Files.deleteIfExists(mTnsAdminPath);
+	}
+
+	private static void deleteFiles(Path dir, String glob) throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, glob)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/*
+	 * Every build file has a unique name, it is removed after each invocation
+	 * (outside of the measured time), so the runs do not fill the disk. Only
+	 * the benchmark writing build files uses this state, the others are not
+	 * slowed down by a per-invocation fixture.
+	 */
+	@State(Scope.Thread)
+	public static class BuildFiles {
+		private Path mTnsAdminPath;
+
+		@TearDown(Level.Invocation)
+		public void deleteBuildFiles() throws IOException {
+			if (mTnsAdminPath != null) {
+				deleteFiles(mTnsAdminPath, "tnsnames.tmpbuild.*.ora");
+			}
+		}
+	}
+
+	@Benchmark
+	public List<TnsSyncEntry> getTnsSyncList() throws TnsSyncFileMissingException, AppException {
+		return new AppFileHandler(mTnsAdminPath).getTnsSyncList();
+	}
+
+	@Benchmark
+	public List<TnsEntry> getCurrentTnsEntryList() throws AppException {
+		return new AppFileHandler(mTnsAdminPath).getCurrentTnsEntryList();
+	}
+
+	@Benchmark
+	public List<TnsEntry> createTnsEntryListForTnsSyncEntries() {
+		return TnsSyncEngine.createTnsEntryListForTnsSyncEntries(mTnsSyncList, mLdapData);
+	}
+
+	@Benchmark
+	public boolean equalLists() {
+		return TnsSyncEngine.equalLists(mTnsEntryList, mTnsEntryListCopy);
+	}
+
+	@Benchmark
+	public List<String> getUniqueNetServiceNameList() {
+		return TnsSyncEngine.getUniqueNetServiceNameList(mTnsSyncList);
+	}
+
+	@Benchmark
+	public void writeNetServiceDataToBuildFile(BuildFiles buildFiles) throws AppException {
+		buildFiles.mTnsAdminPath = mTnsAdminPath;
+		new AppFileHandler(mTnsAdminPath).writeNetServiceDataToBuildFile(mTnsEntryList);
+	}
+}
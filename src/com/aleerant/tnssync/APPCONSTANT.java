@@ -5,7 +5,26 @@ interface APPCONSTANT {
 	public static final String APP_VERSION = "0.9.2-BETA";
 	public static final String APP_LDAPORA_FILENAME = "ldap.ora";
 	public static final String APP_TNSSYNC_FILENAME = "tnssync.ora";
+	public static final String APP_TNSSYNC_FRAGMENT_DIRNAME = "tnssync.d";
 	public static final String APP_TNSNAMES_FILENAME = "tnsnames.ora";
 	public static final String APP_TNSSYNC_LOGBACK_FILENAME = "tnssync_logback.xml";
+	public static final String APP_SNAPSHOT_FILENAME = "tnssync.snapshot";
+	public static final String APP_SERVER_HEALTH_FILENAME = "tnssync.health";
+	public static final String APP_CHANGE_REPORT_FILENAME = "tnssync.changes.json";
+	public static final String APP_LOCK_FILENAME = "tnssync.lock";
+	public static final String APP_BUILD_FILE_PREFIX = "tnsnames.tmpbuild";
+	public static final int APP_CHANGE_LOG_MAX_LINES = 20;
 	public static final String APP_AUTO_SECTION_MARK = "### AUTO-GENERATED SECTION";
+	public static final int APP_DEFAULT_LDAP_FILTER_BATCH_SIZE = 100;
+	public static final int APP_DEFAULT_LDAP_PAGE_SIZE = 500;
+	public static final int APP_DEFAULT_LDAP_SEARCH_THREADS = 8;
+	public static final int APP_DEFAULT_DAEMON_INTERVAL = 60;
+	public static final int APP_DEFAULT_WATCH_DEBOUNCE = 500;
+	public static final int APP_DEFAULT_FLEET_THREADS = 4;
+	public static final int APP_DEFAULT_FULL_SYNC_INTERVAL = 3600;
+	public static final int APP_DEFAULT_LDAP_CONNECT_TIMEOUT = 5000;
+	public static final int APP_DEFAULT_LDAP_READ_TIMEOUT = 60000;
+	public static final int APP_DEFAULT_CIRCUIT_COOLDOWN = 300;
+	public static final String APP_RESOLVER_PATH = "/tns";
+	public static final int APP_DEFAULT_RESOLVER_THREADS = 4;
 }
@@ -1,124 +1,92 @@
 package com.aleerant.tnssync;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.sql.Timestamp;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 import org.slf4j.LoggerFactory;
 
-public class AppFileHandler implements APPCONSTANT {
+public class AppFileHandler implements APPCONSTANT, FileTarget {
 	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(AppFileHandler.class);
 
 	private static final String TNSNAMES_FILE_HEAD_MESSAGE = APP_AUTO_SECTION_MARK + " ##########################################\n"
 			+ "#This is an automatically generated section, please do not modify it!\n#Edit "
 			+ APP_TNSSYNC_FILENAME + " file instead of this!";
+	private static final String MODIFIED_LINE_PREFIX = "#Modified: ";
+	private static final String DIGEST_LINE_PREFIX = "#Digest: ";
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	// the header of the generated section is looked for within this many bytes
+	private static final int DIGEST_HEADER_READ_LIMIT = 1024;
 
 	private Path mTnsAdminPath, mTnsSyncFilePath, mTnsTmpbuildFilePath, mTnsNamesFilePath;
 	private boolean mCurrentTnsNamesCorrupt;
+	private TnsNamesParser.Result mCurrentTnsNames;
+	private FileTime mCurrentTnsNamesLastModified;
+	private final TnsSyncFileSet mTnsSyncFileSet;
 
 	public AppFileHandler(Path tnsAdminPath) {
 		LOGGER.debug("start construction of AppFileHandler class [parameter tnsAdminPath={}]", tnsAdminPath.toString());
 		mTnsAdminPath = tnsAdminPath;
 		mTnsSyncFilePath = Paths.get(mTnsAdminPath.toString(), APP_TNSSYNC_FILENAME);
-		mTnsTmpbuildFilePath = Paths.get(mTnsAdminPath.toString(), "tnsnames.tmpbuild.ora");
 		mTnsNamesFilePath = Paths.get(mTnsAdminPath.toString(), "tnsnames.ora");
+		mTnsSyncFileSet = new TnsSyncFileSet(mTnsAdminPath);
 
 		LOGGER.debug("AppFileHandler properties: [TnsAdminPath        = {}]", mTnsAdminPath.toString());
 		LOGGER.debug("AppFileHandler properties: [TnsSyncFilePath     = {}]", mTnsSyncFilePath.toString());
-		LOGGER.debug("AppFileHandler properties: [TnsTmpbuildFilePath = {}]", mTnsTmpbuildFilePath.toString());
 		LOGGER.debug("AppFileHandler properties: [TnsNamesFilePath    = {}]", mTnsNamesFilePath.toString());
 	}
 
+	/*
+	 * tnssync.ora and the fragments of tnssync.d, a file is parsed again only
+	 * if it has changed since the previous call
+	 */
+	@Override
 	public List<TnsSyncEntry> getTnsSyncList() throws TnsSyncFileMissingException, AppException {
-		LOGGER.debug("start getTnsSyncList from TnsSyncFile [{}]", mTnsSyncFilePath);
-		List<TnsSyncEntry> resultEntries = new ArrayList<TnsSyncEntry>();
-		Pattern patternSimple = Pattern.compile("^\\s*(\\w+)\\s*$");
-		Matcher matcherSimple = patternSimple.matcher("");
-		Pattern patternFullFormat = Pattern.compile("^\\s*(\\w+?)\\s*=\\s*(\\w+?)\\s*$");
-		Matcher matcherFullFormat = patternFullFormat.matcher("");
-
-		try (BufferedReader br = new BufferedReader(new FileReader(mTnsSyncFilePath.toFile()))) {
-			for (String line; (line = br.readLine()) != null;) {
-				LOGGER.trace("read line [{}]", line);
-				if (line.trim().startsWith("#") || line.trim().isEmpty()) {
-					continue;
-				}
-
-				matcherSimple.reset(line);
-				if (matcherSimple.find()) {
-					TnsSyncEntry entry = new TnsSyncEntry(matcherSimple.group(1), matcherSimple.group(1));
-					resultEntries.add(entry);
-					LOGGER.debug("found {}", entry.toString());
-					continue;
-				}
-				
-				matcherFullFormat.reset(line);
-				if (matcherFullFormat.find()) {
-					TnsSyncEntry entry = new TnsSyncEntry(matcherFullFormat.group(1), matcherFullFormat.group(2));
-					resultEntries.add(entry);
-					LOGGER.debug("found {}", entry.toString());
-					continue;
-				}
-
-				LOGGER.debug("{} file is corrupt, line: \"{}\"", APP_TNSSYNC_FILENAME, line);
-				throw new AppException(APP_TNSSYNC_FILENAME + " file is corrupt, line: \""+ line + "\"");
-			}
-		} catch (FileNotFoundException e) {
-			throw new TnsSyncFileMissingException();
-		} catch (IOException e) {
-			throw new AppException("can not read " + APP_TNSSYNC_FILENAME + " file (" + mTnsSyncFilePath.toString()
-					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
-		}
-
-		LOGGER.debug("end getTnsSyncList, result {}", resultEntries.toString());
-		return resultEntries;
+		return mTnsSyncFileSet.getTnsSyncList();
 	}
 
+	@Override
 	public List<TnsEntry> getCurrentTnsEntryList() throws AppException {
 		LOGGER.debug("start getCurrentTnsEntryList: reading of net service data from current tnsnames.ora [{}]",
 				mTnsNamesFilePath.toFile());
 		this.mCurrentTnsNamesCorrupt = false;
+		this.mCurrentTnsNames = null;
 		List<TnsEntry> resultTnsEntries = new ArrayList<TnsEntry>();
-		Pattern pattern = Pattern.compile("^\\s*(\\w+?)\\s*=\\s*(.*)");
-		Matcher matcher = pattern.matcher("");
-		boolean autoSectionFound = false;
-
-		try (BufferedReader br = new BufferedReader(new FileReader(mTnsNamesFilePath.toFile()))) {
-			for (String line; (line = br.readLine()) != null;) {
-				LOGGER.trace("read line [{}]", line);
-				
-				if (!autoSectionFound) {
-					if (line.trim().startsWith(APP_AUTO_SECTION_MARK)) autoSectionFound = true;
-					continue;
-				}
-				
-				if (line.trim().startsWith("#") || line.trim().isEmpty()) {
-					continue;
-				}
 
-				matcher.reset(line);
-				if (matcher.find()) {
-					TnsEntry entry = new TnsEntry(matcher.group(1), matcher.group(2));
-					resultTnsEntries.add(entry);
-					LOGGER.debug("found {}", entry.toString());
-					continue;
-				}
-
-				this.mCurrentTnsNamesCorrupt = true;
-				LOGGER.debug("tnsnames.ora file is corrupt.");
-				break;
+		try {
+			// read before the content, so a write after it shows up as a newer time
+			FileTime lastModified = Files.getLastModifiedTime(mTnsNamesFilePath);
+			TnsNamesParser.Result parseResult = TnsNamesParser.parse(mTnsNamesFilePath);
+			this.mCurrentTnsNames = parseResult;
+			this.mCurrentTnsNamesLastModified = lastModified;
+			resultTnsEntries = parseResult.getAutoSectionTnsEntries();
+			this.mCurrentTnsNamesCorrupt = parseResult.isAutoSectionCorrupt();
+			LOGGER.debug("found {}", resultTnsEntries.toString());
+			if (this.mCurrentTnsNamesCorrupt) {
+				LOGGER.debug("tnsnames.ora file is corrupt at offset {}", parseResult.getCorruptOffset());
 			}
-		} catch (FileNotFoundException e) {
+		} catch (NoSuchFileException e) {
 			LOGGER.debug("current tnsnames.ora file is missing [{}]", mTnsNamesFilePath.toString());
 		} catch (IOException e) {
 			throw new AppException("can not read tnsnames.ora file (" + mTnsNamesFilePath.toString()
@@ -129,41 +97,236 @@ public class AppFileHandler implements APPCONSTANT {
 		return resultTnsEntries;
 	}
 	
+	/*
+	 * Digest of the generated entries in the order they are written. It is
+	 * stored in the header of the generated section next to the body length,
+	 * so an unchanged section can be recognized without parsing it. The
+	 * descriptors are digested in canonical form, so a descriptor changed only
+	 * in its formatting does not make the section stale.
+	 */
+	public static String computeDigest(List<TnsEntry> tnsEntries) throws AppException {
+		MessageDigest md = newMessageDigest();
+		for (TnsEntry tnsEntry : tnsEntries) {
+			md.update((tnsEntry.getNetServiceName() + " = " + tnsEntry.getCanonicalNetDescription())
+					.getBytes(StandardCharsets.UTF_8));
+			md.update((byte) '\n');
+		}
+		return toHex(md.digest());
+	}
+
+	/*
+	 * Digest of the body of the generated section as written, stored next to
+	 * the digest of the entries, so an edit of the section keeping its length
+	 * (e.g. a changed port digit) is recognized too.
+	 */
+	private static String computeBodyDigest(FileChannel channel, long position, long length)
+			throws AppException, IOException {
+		MessageDigest md = newMessageDigest();
+		ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+		long end = position + length;
+		while (position < end) {
+			buf.clear();
+			buf.limit((int) Math.min(buf.capacity(), end - position));
+			int read = channel.read(buf, position);
+			if (read < 0) {
+				break;
+			}
+			buf.flip();
+			md.update(buf);
+			position += read;
+		}
+		return toHex(md.digest());
+	}
+
+	private static MessageDigest newMessageDigest() throws AppException {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new AppException("can not compute digest of net service data, error message: " + e.getMessage()
+					+ ", caused by:" + e.getCause());
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Checks the digest line of the generated section of the current
+	 * tnsnames.ora. Only the manual section is scanned for the section mark,
+	 * the generated entries are read for the body digest but not parsed. A
+	 * different body length or body digest (the section was edited by hand)
+	 * counts as a mismatch, as does a digest line of an older version without
+	 * the body digest.
+	 */
+	@Override
+	public boolean isGeneratedSectionDigest(String digest) throws AppException {
+		LOGGER.debug("start isGeneratedSectionDigest [{}]", mTnsNamesFilePath.toString());
+		try (FileChannel channel = FileChannel.open(mTnsNamesFilePath, StandardOpenOption.READ)) {
+			long markOffset = findAutoSectionMark(channel);
+			if (markOffset < 0) {
+				LOGGER.debug("end isGeneratedSectionDigest, auto-generated section not found");
+				return false;
+			}
+
+			ByteBuffer buf = ByteBuffer.allocate(DIGEST_HEADER_READ_LIMIT);
+			while (buf.hasRemaining() && channel.read(buf, markOffset + buf.position()) > 0) {
+				// read the beginning of the section
+			}
+			String header = new String(buf.array(), 0, buf.position(), StandardCharsets.ISO_8859_1);
+
+			// the mark may be indented
+			int lineStart = 0;
+			while (lineStart < header.length()
+					&& (header.charAt(lineStart) == ' ' || header.charAt(lineStart) == '\t')) {
+				lineStart++;
+			}
+			while (lineStart < header.length() && header.charAt(lineStart) == '#') {
+				int lineEnd = header.indexOf('\n', lineStart);
+				if (lineEnd < 0) {
+					break;
+				}
+				String line = header.substring(lineStart, lineEnd).trim();
+				lineStart = lineEnd + 1;
+				if (line.startsWith(DIGEST_LINE_PREFIX)) {
+					String[] fields = line.substring(DIGEST_LINE_PREFIX.length()).trim().split("\\s+");
+					long bodyLength = channel.size() - markOffset - lineStart;
+					boolean result = fields.length == 3 && fields[0].equals(digest)
+							&& fields[1].equals(String.valueOf(bodyLength))
+							&& fields[2].equals(computeBodyDigest(channel, markOffset + lineStart, bodyLength));
+					LOGGER.debug("end isGeneratedSectionDigest, result {}", result);
+					return result;
+				}
+			}
+			LOGGER.debug("end isGeneratedSectionDigest, digest line not found");
+			return false;
+		} catch (NoSuchFileException e) {
+			LOGGER.debug("current tnsnames.ora file is missing [{}]", mTnsNamesFilePath.toString());
+			return false;
+		} catch (IOException e) {
+			throw new AppException("can not read tnsnames.ora file (" + mTnsNamesFilePath.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+	}
+
+	/*
+	 * returns the offset of the line starting with APP_AUTO_SECTION_MARK (after
+	 * blanks, like TnsNamesParser), or -1
+	 */
+	private static long findAutoSectionMark(FileChannel channel) throws IOException {
+		byte[] mark = APP_AUTO_SECTION_MARK.getBytes(StandardCharsets.ISO_8859_1);
+		ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+		long offset = 0, lineStart = 0;
+		int matched = 0;
+		boolean blanksOnly = true; // only blanks or a part of the mark since the line start
+		while (channel.read(buf) > 0) {
+			buf.flip();
+			while (buf.hasRemaining()) {
+				byte c = buf.get();
+				if (blanksOnly && c == mark[matched]) {
+					if (++matched == mark.length) {
+						return lineStart;
+					}
+				} else if (c == '\n') {
+					blanksOnly = true;
+					matched = 0;
+					lineStart = offset + 1;
+				} else {
+					blanksOnly = blanksOnly && matched == 0 && (c == ' ' || c == '\t');
+					matched = 0;
+				}
+				offset++;
+			}
+			buf.clear();
+		}
+		return -1;
+	}
+
+	@Override
+	public Path getTnsAdminPath() {
+		return mTnsAdminPath;
+	}
+
 	public Path getTnsSyncFilePath() {
 		return mTnsSyncFilePath;
 	}
 
+	@Override
 	public boolean isCurrentTnsNamesCorrupt() {
 		return mCurrentTnsNamesCorrupt;
 	}
 
+	/*
+	 * Build files left behind by a run that ended before moving its build file
+	 * are removed once the directory is locked: the runs holding the lock are
+	 * serialized, so no other run is writing one of them.
+	 */
+	@Override
+	public TnsAdminLock lock(long timeoutMillis) throws AppException {
+		TnsAdminLock lock = TnsAdminLock.acquire(mTnsAdminPath, timeoutMillis);
+		if (lock != null) {
+			removeStaleBuildFiles();
+		}
+		return lock;
+	}
+
+	private void removeStaleBuildFiles() {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(mTnsAdminPath,
+				APP_BUILD_FILE_PREFIX + ".*.ora")) {
+			for (Path buildFile : stream) {
+				Files.deleteIfExists(buildFile);
+				LOGGER.info("stale build file removed [{}]", buildFile.toString());
+			}
+		} catch (IOException e) {
+			LOGGER.warn("can not remove stale build files in {}: {}", mTnsAdminPath.toString(), e.getMessage());
+		}
+	}
+
+	/*
+	 * The manual section of the current tnsnames.ora is copied to the build
+	 * file byte by byte (FileChannel.transferTo), the generated section is
+	 * written from one buffer, then the build file is forced to disk. Each
+	 * build file has a unique name, so a run not holding the lock of the
+	 * directory (e.g. an older version) does not write into it.
+	 */
+	@Override
 	public void writeNetServiceDataToBuildFile(List<TnsEntry> tnsNames) throws AppException {
+		mTnsTmpbuildFilePath = Utils.getUniqueSibling(mTnsNamesFilePath, APP_BUILD_FILE_PREFIX, "ora");
 		LOGGER.debug("start writeNetServiceDataToBuildFile [{}]", mTnsTmpbuildFilePath.toString());
-		try {
-			java.util.Date date = new java.util.Date();
-			BufferedReader br = new BufferedReader(new FileReader(mTnsNamesFilePath.toFile()));
-			PrintWriter w = new PrintWriter(mTnsTmpbuildFilePath.toFile());
-			
-			for (String line; (line = br.readLine()) != null;) {
-				LOGGER.trace("read line [{}]", line);
-				
-				if (!line.trim().startsWith(APP_AUTO_SECTION_MARK)) {
-					w.println(line);
-					continue;
-				} else {
-					break;
-				}
-			}
-			br.close();
-			
-			w.println(TNSNAMES_FILE_HEAD_MESSAGE);
-			w.println("#Modified: " + new Timestamp(date.getTime()));
-			w.println();
+		try (FileChannel out = FileChannel.open(mTnsTmpbuildFilePath, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE)) {
+			String lineSeparator = System.lineSeparator();
+			boolean separatorNeeded = copyManualSection(out);
+
+			StringBuilder body = new StringBuilder(estimateBodySize(tnsNames));
+			body.append(lineSeparator);
 			for (TnsEntry tnsName : tnsNames) {
-				w.println(tnsName.getTnsNamesEntryFormat());
+				body.append(tnsName.getTnsNamesEntryFormat()).append(lineSeparator);
 			}
-			w.close();
+			byte[] bodyBytes = body.toString().getBytes();
+
+			StringBuilder header = new StringBuilder(512);
+			if (separatorNeeded) {
+				header.append(lineSeparator);
+			}
+			header.append(TNSNAMES_FILE_HEAD_MESSAGE).append(lineSeparator);
+			header.append(MODIFIED_LINE_PREFIX).append(formatModified(new Date())).append(lineSeparator);
+			header.append(DIGEST_LINE_PREFIX).append(computeDigest(tnsNames)).append(' ').append(bodyBytes.length)
+					.append(' ').append(toHex(newMessageDigest().digest(bodyBytes))).append(lineSeparator);
+			byte[] headerBytes = header.toString().getBytes();
+
+			ByteBuffer buf = ByteBuffer.allocate(headerBytes.length + bodyBytes.length);
+			buf.put(headerBytes).put(bodyBytes).flip();
+			while (buf.hasRemaining()) {
+				out.write(buf);
+			}
+			out.force(true);
 		} catch (IOException e) {
+			deleteBuildFile();
 			throw new AppException("can not create build file (" + mTnsTmpbuildFilePath.toString() 
 					+ ") or read tnsnames.ora file ("
 					+ mTnsNamesFilePath.toString()
@@ -173,16 +336,261 @@ public class AppFileHandler implements APPCONSTANT {
 		LOGGER.debug("end writeNetServiceDataToBuildFile");
 	}
 
+	private void deleteBuildFile() {
+		try {
+			Files.deleteIfExists(mTnsTmpbuildFilePath);
+		} catch (IOException e) {
+			LOGGER.debug("can not delete build file {}: {}", mTnsTmpbuildFilePath.toString(), e.getMessage());
+		}
+	}
+
+	/*
+	 * copies the current tnsnames.ora up to the auto-generated section mark,
+	 * returns true if the copied part does not end with a line separator
+	 */
+	private boolean copyManualSection(FileChannel out) throws IOException {
+		try (FileChannel in = FileChannel.open(mTnsNamesFilePath, StandardOpenOption.READ)) {
+			long length = findAutoSectionMark(in);
+			if (length < 0) {
+				length = in.size();
+			}
+			LOGGER.debug("copy manual section of tnsnames.ora ({} bytes)", length);
+			long position = 0;
+			while (position < length) {
+				position += in.transferTo(position, length - position, out);
+			}
+			if (length == 0) {
+				return false;
+			}
+			ByteBuffer last = ByteBuffer.allocate(1);
+			in.read(last, length - 1);
+			return last.get(0) != '\n';
+		} catch (NoSuchFileException e) {
+			LOGGER.debug("current tnsnames.ora file is missing [{}]", mTnsNamesFilePath.toString());
+			return false;
+		}
+	}
+
+	private static int estimateBodySize(List<TnsEntry> tnsNames) {
+		long size = 16;
+		for (TnsEntry tnsName : tnsNames) {
+			size += tnsName.getNetServiceName().length() + tnsName.getNetDescriptionString().length() + 5;
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE - 8);
+	}
+
+	// fixed length, so the #Modified line can be overwritten in place
+	private static String formatModified(Date date) {
+		return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(date);
+	}
+
+	/*
+	 * Patch mode: if only descriptors have changed, the changed entries of the
+	 * last parsed tnsnames.ora are overwritten in place. Entries keeping their
+	 * length are overwritten one by one, from the first entry changing its
+	 * length the rest of the file is written again. The #Modified and #Digest
+	 * lines are overwritten too. Returns false if the layout of the file does
+	 * not allow this (names added or removed, more names in one entry, another
+	 * order of entries, header lines changing their length, file modified since
+	 * it was parsed), then the whole file has to be written.
+	 */
+	@Override
+	public boolean patchGeneratedSection(List<TnsEntry> tnsNames, TnsEntryDiff diff) throws AppException {
+		LOGGER.debug("start patchGeneratedSection [{}]", mTnsNamesFilePath.toString());
+		TnsNamesParser.Result current = this.mCurrentTnsNames;
+		this.mCurrentTnsNames = null;
+		if (current == null || !current.hasAutoSection() || current.isAutoSectionCorrupt() || !diff.isChangeOnly()
+				|| diff.getChanged().isEmpty()) {
+			LOGGER.debug("end patchGeneratedSection, the layout does not allow patching");
+			return false;
+		}
+
+		final Map<String, TnsNamesParser.Entry> entries = new HashMap<String, TnsNamesParser.Entry>();
+		int index = 0, previousStart = -1;
+		for (TnsNamesParser.Entry entry : current.getEntries()) {
+			if (!entry.isAutoSection()) {
+				continue;
+			}
+			if (entry.getStartOffset() == previousStart || index >= tnsNames.size()
+					|| !entry.getTnsEntry().getNetServiceName().equals(tnsNames.get(index).getNetServiceName())) {
+				LOGGER.debug("end patchGeneratedSection, the entries of the file differ from the generated order");
+				return false;
+			}
+			previousStart = entry.getStartOffset();
+			entries.put(entry.getTnsEntry().getNetServiceName(), entry);
+			index++;
+		}
+
+		List<TnsEntryDiff.Change> changes = new ArrayList<TnsEntryDiff.Change>(diff.getChanged());
+		Collections.sort(changes, new Comparator<TnsEntryDiff.Change>() {
+			@Override
+			public int compare(TnsEntryDiff.Change c1, TnsEntryDiff.Change c2) {
+				return Integer.compare(entries.get(c1.getNewEntry().getNetServiceName()).getStartOffset(),
+						entries.get(c2.getNewEntry().getNetServiceName()).getStartOffset());
+			}
+		});
+
+		try (FileChannel channel = FileChannel.open(mTnsNamesFilePath, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			int headerEnd = entries.get(tnsNames.get(0).getNetServiceName()).getStartOffset();
+			if (isModifiedSince(current) || headerEnd - current.getAutoSectionStart() > DIGEST_HEADER_READ_LIMIT) {
+				LOGGER.debug("end patchGeneratedSection, the file is modified or its header is too long");
+				return false;
+			}
+
+			// in-place patches before the first entry changing its length, then the tail
+			List<Long> patchOffsets = new ArrayList<Long>();
+			List<byte[]> patches = new ArrayList<byte[]>();
+			long tailStart = -1, newSize = size;
+			for (TnsEntryDiff.Change change : changes) {
+				TnsNamesParser.Entry entry = entries.get(change.getNewEntry().getNetServiceName());
+				byte[] oldBytes = read(channel, entry.getStartOffset(), entry.getEndOffset() - entry.getStartOffset());
+				String oldLine = new String(oldBytes, StandardCharsets.ISO_8859_1);
+				String lineEnd = oldLine.endsWith("\r\n") ? "\r\n" : oldLine.endsWith("\n") ? "\n" : "";
+				byte[] newBytes = (change.getNewEntry().getTnsNamesEntryFormat() + lineEnd).getBytes();
+				if (tailStart < 0 && newBytes.length != oldBytes.length) {
+					tailStart = entry.getStartOffset();
+				}
+				newSize += newBytes.length - oldBytes.length;
+				patchOffsets.add((long) entry.getStartOffset());
+				patches.add(newBytes);
+			}
+
+			ByteBuffer tail = null;
+			if (tailStart >= 0) {
+				byte[] oldTail = read(channel, tailStart, (int) (size - tailStart));
+				tail = ByteBuffer.allocate((int) (newSize - tailStart));
+				int copied = 0;
+				for (int i = 0; i < patches.size(); i++) {
+					int offset = (int) (patchOffsets.get(i) - tailStart);
+					if (offset < 0) {
+						continue;
+					}
+					TnsNamesParser.Entry entry = entries.get(changes.get(i).getNewEntry().getNetServiceName());
+					tail.put(oldTail, copied, offset - copied).put(patches.get(i));
+					copied = offset + entry.getEndOffset() - entry.getStartOffset();
+				}
+				tail.put(oldTail, copied, oldTail.length - copied).flip();
+			}
+
+			// the header lines must keep their length
+			String header = new String(read(channel, current.getAutoSectionStart(),
+					headerEnd - current.getAutoSectionStart()), StandardCharsets.ISO_8859_1);
+			int modifiedStart = header.indexOf("\n" + MODIFIED_LINE_PREFIX) + 1;
+			int digestStart = header.indexOf("\n" + DIGEST_LINE_PREFIX) + 1;
+			if (modifiedStart == 0 || digestStart == 0) {
+				LOGGER.debug("end patchGeneratedSection, header lines not found");
+				return false;
+			}
+			int modifiedEnd = lineContentEnd(header, modifiedStart);
+			int digestEnd = lineContentEnd(header, digestStart);
+			long bodyStart = current.getAutoSectionStart() + header.indexOf('\n', digestStart) + 1;
+			long bodyLength = newSize - bodyStart;
+			byte[] modifiedLine = (MODIFIED_LINE_PREFIX + formatModified(new Date())).getBytes();
+			// the body digest is known once the body is patched, it has a fixed length
+			String digestLinePrefix = DIGEST_LINE_PREFIX + computeDigest(tnsNames) + " " + bodyLength + " ";
+			int digestLineLength = digestLinePrefix.length() + 2 * newMessageDigest().getDigestLength();
+			if (modifiedLine.length != modifiedEnd - modifiedStart || digestLineLength != digestEnd - digestStart) {
+				LOGGER.debug("end patchGeneratedSection, the length of the header lines would change");
+				return false;
+			}
+
+			for (int i = 0; i < patches.size() && (tailStart < 0 || patchOffsets.get(i) < tailStart); i++) {
+				write(channel, patchOffsets.get(i), ByteBuffer.wrap(patches.get(i)));
+			}
+			if (tail != null) {
+				write(channel, tailStart, tail);
+				channel.truncate(newSize);
+			}
+			byte[] digestLine = (digestLinePrefix + computeBodyDigest(channel, bodyStart, bodyLength)).getBytes();
+			write(channel, current.getAutoSectionStart() + modifiedStart, ByteBuffer.wrap(modifiedLine));
+			write(channel, current.getAutoSectionStart() + digestStart, ByteBuffer.wrap(digestLine));
+			channel.force(true);
+			LOGGER.debug("end patchGeneratedSection, {} entries patched, {} bytes rewritten from the first length"
+					+ " change", changes.size(), tail == null ? 0 : tail.limit());
+			return true;
+		} catch (IOException e) {
+			throw new AppException("can not patch tnsnames.ora file (" + mTnsNamesFilePath.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+	}
+
+	/*
+	 * the size or the modification time of tnsnames.ora differs from the
+	 * parsed one (e.g. an edit keeping the size)
+	 */
+	private boolean isModifiedSince(TnsNamesParser.Result parsed) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(mTnsNamesFilePath, BasicFileAttributes.class);
+		return attributes.size() != parsed.getLength()
+				|| !attributes.lastModifiedTime().equals(mCurrentTnsNamesLastModified);
+	}
+
+	private static int lineContentEnd(String text, int lineStart) {
+		int end = text.indexOf('\n', lineStart);
+		end = end < 0 ? text.length() : end;
+		return end > lineStart && text.charAt(end - 1) == '\r' ? end - 1 : end;
+	}
+
+	private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining() && channel.read(buf, position + buf.position()) >= 0) {
+			// read the whole range
+		}
+		return buf.array();
+	}
+
+	private static void write(FileChannel channel, long position, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			channel.write(buf, position + buf.position());
+		}
+	}
+
+	/*
+	 * writes the added, removed and changed entries to the change report file
+	 * of the directory (JSON)
+	 */
+	@Override
+	public void writeChangeReport(TnsEntryDiff diff) throws AppException {
+		Path reportFilePath = Paths.get(mTnsAdminPath.toString(), APP_CHANGE_REPORT_FILENAME);
+		try {
+			Utils.writeFileAtomically(reportFilePath,
+					diff.toJson(mTnsAdminPath.toString(), System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new AppException("can not write change report file (" + reportFilePath.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+	}
+
+	/*
+	 * The build file replaces tnsnames.ora by an atomic rename, so readers
+	 * see either the old or the new file. The directory is forced too, where
+	 * the platform allows it, to make the rename durable.
+	 */
+	@Override
 	public void moveBuidFileToFinal() throws AppException {
 		LOGGER.debug("start moveBuidFileToFinal [buildfile={}, targetfile={}]", mTnsTmpbuildFilePath.toString(),
 				mTnsNamesFilePath.toString());
 		try {
-			Files.move(mTnsTmpbuildFilePath, mTnsNamesFilePath, StandardCopyOption.REPLACE_EXISTING);
+			try {
+				Files.move(mTnsTmpbuildFilePath, mTnsNamesFilePath, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				LOGGER.warn("atomic move is not supported in {}, replacing tnsnames.ora non-atomically",
+						mTnsAdminPath.toString());
+				Files.move(mTnsTmpbuildFilePath, mTnsNamesFilePath, StandardCopyOption.REPLACE_EXISTING);
+			}
 		} catch (IOException e) {
 			throw new AppException("can not move build file to final tnsnames.ora (buildfile: "
 					+ mTnsTmpbuildFilePath.toString() + ", target: " + mTnsNamesFilePath.toString()
 					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
 		}
 
+		try (FileChannel dir = FileChannel.open(mTnsAdminPath, StandardOpenOption.READ)) {
+			dir.force(true);
+		} catch (IOException e) {
+			// not supported on every platform (e.g. Windows)
+			LOGGER.debug("can not force directory {}: {}", mTnsAdminPath.toString(), e.getMessage());
+		}
+		LOGGER.debug("end moveBuidFileToFinal");
 	}
 }
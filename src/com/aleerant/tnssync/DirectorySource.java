@@ -0,0 +1,16 @@
+package com.aleerant.tnssync;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Source of the net service data of a synchronization, by net service name.
+ * The names may be glob patterns of tnssync.ora. Implementations record the
+ * query time, the server and the kind of the source in the metrics.
+ * LdapDirectorySource queries the directory servers.
+ */
+public interface DirectorySource {
+
+	public Map<String, TnsEntry> queryTnsEntryMap(List<String> netServiceNames, SyncMetrics metrics)
+			throws AppException;
+}
@@ -0,0 +1,43 @@
+package com.aleerant.tnssync;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/*
+ * The files of a TNS_ADMIN directory synchronized by TnsSyncEngine: the list
+ * of the requested net services (tnssync.ora) and the tnsnames.ora with its
+ * generated section. AppFileHandler is the file system implementation.
+ */
+public interface FileTarget {
+
+	public Path getTnsAdminPath();
+
+	/*
+	 * locks the directory for one synchronization, waiting at most
+	 * timeoutMillis; null if another run still holds the lock
+	 */
+	public TnsAdminLock lock(long timeoutMillis) throws AppException;
+
+	public List<TnsSyncEntry> getTnsSyncList() throws TnsSyncFileMissingException, AppException;
+
+	/*
+	 * true if the header of the generated section carries the digest, so the
+	 * section need not be parsed
+	 */
+	public boolean isGeneratedSectionDigest(String digest) throws AppException;
+
+	public List<TnsEntry> getCurrentTnsEntryList() throws AppException;
+
+	public boolean isCurrentTnsNamesCorrupt();
+
+	/*
+	 * returns false if only the whole generated section can be written
+	 */
+	public boolean patchGeneratedSection(List<TnsEntry> tnsNames, TnsEntryDiff diff) throws AppException;
+
+	public void writeChangeReport(TnsEntryDiff diff) throws AppException;
+
+	public void writeNetServiceDataToBuildFile(List<TnsEntry> tnsNames) throws AppException;
+
+	public void moveBuidFileToFinal() throws AppException;
+}
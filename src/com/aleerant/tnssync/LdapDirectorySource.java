@@ -0,0 +1,87 @@
+package com.aleerant.tnssync;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Net service data queried from the directory servers. Without a snapshot
+ * the directory server is queried. With a snapshot the query is skipped while
+ * the snapshot is within its time to live, the query is incremental if
+ * requested, and the snapshot is used in place of the directory server if it
+ * is not available. A snapshot read from a file is written back after each
+ * query.
+ */
+public class LdapDirectorySource implements DirectorySource {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LdapDirectorySource.class);
+
+	private final LdapHandler mLdapHandler;
+	private final LdapSnapshot mSnapshot;
+	private final TnsSyncConfig mConfig;
+
+	public LdapDirectorySource(LdapHandler ldapHandler, LdapSnapshot snapshot, TnsSyncConfig config) {
+		mLdapHandler = ldapHandler;
+		mSnapshot = snapshot;
+		mConfig = config;
+	}
+
+	@Override
+	public Map<String, TnsEntry> queryTnsEntryMap(List<String> netServiceNames, SyncMetrics metrics)
+			throws AppException {
+		if (mSnapshot == null) {
+			return queryLdap(netServiceNames, false, metrics);
+		}
+
+		String directoryKey = mLdapHandler.getDirectoryKey();
+		if (mSnapshot.isFresh(directoryKey, mConfig.getSnapshotTtl() * 1000L, netServiceNames)) {
+			LOGGER.info("ldap query skipped, snapshot is up to date (refreshed: {})",
+					new Timestamp(mSnapshot.getLastRefresh()));
+			metrics.setSource(SyncMetrics.SOURCE_SNAPSHOT);
+			return mSnapshot.getEntries(netServiceNames);
+		}
+
+		Map<String, TnsEntry> tnsDataFromLdap;
+		try {
+			if (mConfig.isIncremental()) {
+				tnsDataFromLdap = queryLdap(netServiceNames, true, metrics);
+			} else {
+				tnsDataFromLdap = queryLdap(netServiceNames, false, metrics);
+				mSnapshot.replace(directoryKey, netServiceNames, tnsDataFromLdap,
+						mLdapHandler.getLastQueryHighWaterMark());
+			}
+		} catch (AppException e) {
+			if (!mSnapshot.hasData(directoryKey)) {
+				throw e;
+			}
+			LOGGER.warn("{}, using snapshot (refreshed: {})", e.getMessage(), new Timestamp(mSnapshot.getLastRefresh()));
+			metrics.setSource(SyncMetrics.SOURCE_SNAPSHOT);
+			return mSnapshot.getEntries(netServiceNames);
+		}
+		mSnapshot.save();
+		return tnsDataFromLdap;
+	}
+
+	/*
+	 * queries the directory server, incrementally if requested, and records
+	 * the connect and search time, the server and the result count
+	 */
+	private Map<String, TnsEntry> queryLdap(List<String> netServiceNames, boolean incremental, SyncMetrics metrics)
+			throws AppException {
+		long start = System.nanoTime();
+		try {
+			Map<String, TnsEntry> tnsDataFromLdap = incremental
+					? mLdapHandler.queryTnsEntryMap(netServiceNames, mSnapshot, mConfig.getFullSyncInterval() * 1000L)
+					: mLdapHandler.queryTnsEntryMap(netServiceNames);
+			metrics.setSource(SyncMetrics.SOURCE_LDAP);
+			metrics.setLdapEntries(tnsDataFromLdap.size());
+			return tnsDataFromLdap;
+		} finally {
+			long connectNanos = mLdapHandler.getLastQueryConnectNanos();
+			metrics.addPhase(SyncMetrics.PHASE_LDAP_CONNECT, connectNanos);
+			metrics.addPhase(SyncMetrics.PHASE_LDAP_SEARCH, System.nanoTime() - start - connectNanos);
+			metrics.setServer(mLdapHandler.getConnectedServer());
+		}
+	}
+}
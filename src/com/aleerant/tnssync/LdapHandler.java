@@ -1,62 +1,155 @@
 package com.aleerant.tnssync;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.naming.CommunicationException;
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
 import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.Rdn;
 import org.slf4j.LoggerFactory;
 
-public class LdapHandler {
+public class LdapHandler implements APPCONSTANT {
 	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LdapHandler.class);
 
+	private static final String[] RETURNING_ATTRIBUTES = { "cn", "orclNetDescString", "aliasedObjectName",
+			"modifyTimestamp" };
+	private static final String NET_SERVICE_FILTER = "(|(objectClass=orclNetService)(objectClass=orclNetServiceAlias))";
+	private static final int MAX_ALIAS_CHAIN_LENGTH = 8;
+
 	private String mAdminContext;
+	private Map<String, String> mDomainAdminContexts = Collections.emptyMap();
 	private String mProviderURLs;
+	private int mFilterBatchSize;
+	private int mPageSize;
+	private int mConnectTimeout = APP_DEFAULT_LDAP_CONNECT_TIMEOUT;
+	private int mReadTimeout = APP_DEFAULT_LDAP_READ_TIMEOUT;
+	private int mHedgedConnectCount = 1;
+	private LdapServerHealth mServerHealth;
 	private LdapContext mCtx;
+	// further connections to the server of mCtx for concurrent searches
+	private List<LdapContext> mSearchCtxs = new ArrayList<LdapContext>();
+	private String mConnectedServer;
+	private int mLastQueryPageCount;
+	private long mLastQueryConnectNanos;
+	private List<Long> mLastQueryPageLatencies = new ArrayList<Long>();
+	private String mLastQueryHighWaterMark;
 
 	// constructor
 	public LdapHandler(String providerURLs, String adminContext) throws AppException {
-		LOGGER.debug("start construction of LdapHandler class [providerURLs={}, adminContext={}]", providerURLs,
-				adminContext);
+		this(providerURLs, adminContext, APP_DEFAULT_LDAP_FILTER_BATCH_SIZE, APP_DEFAULT_LDAP_PAGE_SIZE);
+	}
+
+	public LdapHandler(String providerURLs, String adminContext, int filterBatchSize, int pageSize)
+			throws AppException {
+		LOGGER.debug(
+				"start construction of LdapHandler class [providerURLs={}, adminContext={}, filterBatchSize={}, pageSize={}]",
+				providerURLs, adminContext, filterBatchSize, pageSize);
 		this.mAdminContext = adminContext;
 		this.mProviderURLs = providerURLs;
+		this.mFilterBatchSize = filterBatchSize;
+		this.mPageSize = pageSize;
+	}
+
+	/*
+	 * connect and read timeouts of the LDAP connection in milliseconds, 0 means
+	 * no timeout
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout) {
+		this.mConnectTimeout = connectTimeout;
+		this.mReadTimeout = readTimeout;
+	}
+
+	/*
+	 * number of directory servers connected to concurrently, the first
+	 * successful connection is kept
+	 */
+	public void setHedgedConnectCount(int hedgedConnectCount) {
+		this.mHedgedConnectCount = hedgedConnectCount;
+	}
+
+	/*
+	 * admin contexts by domain (upper case): a net service name qualified with
+	 * one of the domains is searched under the admin context of the domain,
+	 * without the domain, the other names under the default admin context
+	 */
+	public void setDomainAdminContexts(Map<String, String> domainAdminContexts) {
+		this.mDomainAdminContexts = domainAdminContexts;
+	}
+
+	/*
+	 * statistics used to order the directory servers and to skip the failing
+	 * ones
+	 */
+	public void setServerHealth(LdapServerHealth serverHealth) {
+		this.mServerHealth = serverHealth;
 	}
 
 	private LdapContext getCtx() throws AppException {
 		if (this.mCtx == null) {
-			LOGGER.debug("start creating LdapContext [providerURLs={}]", this.mProviderURLs);
-			Hashtable<String, Object> env = new Hashtable<String, Object>();
-			env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-			env.put(Context.SECURITY_AUTHENTICATION, "none");
-			Iterator<String> i = getProviderUrlList(this.mProviderURLs).iterator();
-			while (i.hasNext()) {
-				env.put(Context.PROVIDER_URL, "ldap://" + i.next());
-				try {
-					LOGGER.debug("connecting to LDAP server [{}]", env.toString());
-					this.mCtx = new InitialLdapContext(env, null);
-					LOGGER.debug("connected to LDAP server");
-					break;
-				} catch (NamingException e) {
-					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug("connection failed to LDAP server [{}]", env.toString());
-						LOGGER.debug(Utils.getStackTrace(e));
-					} else {
-						LOGGER.warn("connection failed to LDAP server [{}], Caused by: {}", e.getMessage(),
-								e.getCause());
+			long connectStart = System.nanoTime();
+			LOGGER.debug("start creating LdapContext [providerURLs={}, connectTimeout={}, readTimeout={}, hedged={}]",
+					this.mProviderURLs, this.mConnectTimeout, this.mReadTimeout, this.mHedgedConnectCount);
+			Hashtable<String, Object> env = createEnvironment();
+
+			List<String> servers = getProviderUrlList(this.mProviderURLs);
+			if (this.mServerHealth != null) {
+				servers = this.mServerHealth.rank(servers);
+			}
+			if (this.mHedgedConnectCount > 1) {
+				for (int from = 0; from < servers.size() && this.mCtx == null; from += this.mHedgedConnectCount) {
+					connectHedged(servers.subList(from, Math.min(from + this.mHedgedConnectCount, servers.size())),
+							env);
+				}
+			} else {
+				Iterator<String> i = servers.iterator();
+				while (i.hasNext() && this.mCtx == null) {
+					String server = i.next();
+					try {
+						this.mCtx = connect(server, env, null);
+						this.mConnectedServer = server;
+					} catch (NamingException e) {
+						logConnectionFailure(server, e);
 					}
 				}
 			}
 
+			this.mLastQueryConnectNanos += System.nanoTime() - connectStart;
+			saveServerHealth();
 			if (this.mCtx == null) {
 				// connection failed
 				throw new AppException("failed to connect any LDAP Server [providerURLs: " + this.mProviderURLs + "]");
@@ -65,47 +158,830 @@ public class LdapHandler {
 		return this.mCtx;
 	}
 
+	private Hashtable<String, Object> createEnvironment() {
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+		env.put(Context.SECURITY_AUTHENTICATION, "none");
+		// alias entries are returned as they are and resolved by resolveAliases
+		env.put("java.naming.ldap.derefAliases", "never");
+		if (this.mConnectTimeout > 0) {
+			env.put("com.sun.jndi.ldap.connect.timeout", String.valueOf(this.mConnectTimeout));
+		}
+		if (this.mReadTimeout > 0) {
+			env.put("com.sun.jndi.ldap.read.timeout", String.valueOf(this.mReadTimeout));
+		}
+		return env;
+	}
+
+	/*
+	 * the outcome is recorded in the server statistics unless the attempt is
+	 * abandoned (a hedged attempt still running when another one has won)
+	 */
+	private LdapContext connect(String server, Hashtable<String, Object> env, AtomicBoolean abandoned)
+			throws NamingException {
+		Hashtable<String, Object> serverEnv = new Hashtable<String, Object>(env);
+		serverEnv.put(Context.PROVIDER_URL, "ldap://" + server);
+		LOGGER.debug("connecting to LDAP server [{}]", serverEnv.toString());
+		long start = System.nanoTime();
+		LdapContext ctx;
+		try {
+			ctx = new InitialLdapContext(serverEnv, null);
+			try {
+				// an anonymous context does not talk to the server, reading the root DSE
+				// makes sure that the server responds
+				ctx.getAttributes("", new String[] { "supportedLDAPVersion" });
+			} catch (NamingException e) {
+				ctx.close();
+				throw e;
+			}
+		} catch (NamingException e) {
+			recordConnect(server, -1, abandoned);
+			throw e;
+		}
+		long latency = (System.nanoTime() - start) / 1000000L;
+		recordConnect(server, latency, abandoned);
+		LOGGER.debug("connected to LDAP server [{}] in {} ms", server, latency);
+		return ctx;
+	}
+
+	// latencyMillis < 0: failed
+	private void recordConnect(String server, long latencyMillis, AtomicBoolean abandoned) {
+		if (this.mServerHealth == null) {
+			return;
+		}
+		if (abandoned == null) {
+			recordConnect(server, latencyMillis);
+			return;
+		}
+		synchronized (abandoned) {
+			if (!abandoned.get()) {
+				recordConnect(server, latencyMillis);
+			}
+		}
+	}
+
+	private void recordConnect(String server, long latencyMillis) {
+		if (latencyMillis < 0) {
+			this.mServerHealth.recordFailure(server);
+		} else {
+			this.mServerHealth.recordSuccess(server, latencyMillis);
+		}
+	}
+
+	private void saveServerHealth() {
+		if (this.mServerHealth != null) {
+			try {
+				this.mServerHealth.save();
+			} catch (AppException e) {
+				LOGGER.warn(e.getMessage());
+			}
+		}
+	}
+
+	private void logConnectionFailure(String server, NamingException e) {
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("connection failed to LDAP server [{}]", server);
+			LOGGER.debug(Utils.getStackTrace(e));
+		} else {
+			LOGGER.warn("connection failed to LDAP server [{}], error message: {}", server, e.getMessage());
+		}
+	}
+
+	/*
+	 * Connects to the servers concurrently and keeps the connection that is
+	 * established first. The other attempts are abandoned (a blocking JNDI
+	 * connect can not be interrupted, it is bounded by the connect timeout), the
+	 * connections made by them are closed as soon as they are established.
+	 * The outcome of an abandoned attempt is not recorded, the statistics are
+	 * saved right after the connect and would miss it anyway.
+	 */
+	private void connectHedged(List<String> servers, final Hashtable<String, Object> env) throws AppException {
+		ExecutorService executor = Executors.newFixedThreadPool(servers.size(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "tnssync-ldap-connect");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		CompletionService<LdapContext> completionService = new ExecutorCompletionService<LdapContext>(executor);
+		final Map<Future<LdapContext>, String> attempts = new HashMap<Future<LdapContext>, String>();
+		final AtomicBoolean abandoned = new AtomicBoolean();
+		try {
+			for (final String server : servers) {
+				attempts.put(completionService.submit(new Callable<LdapContext>() {
+					@Override
+					public LdapContext call() throws NamingException {
+						return connect(server, env, abandoned);
+					}
+				}), server);
+			}
+
+			for (int i = 0; i < servers.size() && this.mCtx == null; i++) {
+				Future<LdapContext> attempt = completionService.take();
+				try {
+					this.mCtx = attempt.get();
+					this.mConnectedServer = attempts.remove(attempt);
+				} catch (ExecutionException e) {
+					String server = attempts.remove(attempt);
+					if (e.getCause() instanceof NamingException) {
+						logConnectionFailure(server, (NamingException) e.getCause());
+					} else {
+						LOGGER.warn("connection failed to LDAP server [{}]: {}", server, Utils.getStackTrace(e));
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AppException("interrupted while connecting to LDAP Server [providerURLs: " + this.mProviderURLs
+					+ "]");
+		} finally {
+			synchronized (abandoned) {
+				abandoned.set(true);
+			}
+			for (final Future<LdapContext> attempt : attempts.keySet()) {
+				executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						closeLostAttempt(attempt);
+					}
+				});
+			}
+			executor.shutdown();
+		}
+	}
+
+	private void closeLostAttempt(Future<LdapContext> attempt) {
+		try {
+			attempt.get().close();
+		} catch (Exception e) {
+			// the attempt failed, nothing to close
+		}
+	}
+
 	private List<String> getProviderUrlList(String providerURLs) {
 		return Arrays.asList(providerURLs.replaceAll("[()\\s]", "").split(","));
 	}
 
+	/*
+	 * closes the LdapContext, the next query connects again
+	 */
+	public void close() {
+		if (this.mCtx != null) {
+			LOGGER.debug("closing LdapContext");
+			closeCtx(this.mCtx);
+			for (LdapContext searchCtx : this.mSearchCtxs) {
+				closeCtx(searchCtx);
+			}
+			this.mSearchCtxs.clear();
+			this.mCtx = null;
+			this.mConnectedServer = null;
+		}
+	}
+
+	private static void closeCtx(LdapContext ctx) {
+		try {
+			ctx.close();
+		} catch (NamingException e) {
+			LOGGER.debug("failed to close LdapContext: {}", e.getMessage());
+		}
+	}
+
 	public Map<String, TnsEntry> queryTnsEntryMap(List<String> filterCnList) throws AppException {
+		final Map<String, TnsEntry> resultTnsEntries = new HashMap<String, TnsEntry>();
+		queryTnsEntries(filterCnList, new TnsEntryPageHandler() {
+			@Override
+			public void handlePage(List<TnsEntry> page) {
+				for (TnsEntry entry : page) {
+					resultTnsEntries.put(entry.getNetServiceName(), entry);
+				}
+			}
+		});
+		return resultTnsEntries;
+	}
+
+	/*
+	 * Incremental query: only the entries modified since the high-water mark of
+	 * the snapshot and the names not requested before are queried, the result is
+	 * merged into the snapshot. A full query is run if the snapshot belongs to
+	 * another directory or its last full query is older than
+	 * fullSyncIntervalMillis, so deleted entries are noticed as well.
+	 */
+	public Map<String, TnsEntry> queryTnsEntryMap(List<String> filterCnList, LdapSnapshot snapshot,
+			long fullSyncIntervalMillis) throws AppException {
+		String directoryKey = getDirectoryKey();
+		if (!snapshot.isUsable(directoryKey, fullSyncIntervalMillis)) {
+			LOGGER.debug("full query of net service data");
+			Map<String, TnsEntry> resultTnsEntries = queryTnsEntryMap(filterCnList);
+			snapshot.replace(directoryKey, filterCnList, resultTnsEntries, this.mLastQueryHighWaterMark);
+			return resultTnsEntries;
+		}
+
+		List<String> knownNames = new ArrayList<String>();
+		List<String> newNames = new ArrayList<String>();
+		for (String name : filterCnList) {
+			if (snapshot.getRequestedNames().contains(name.toUpperCase())) {
+				knownNames.add(name);
+			} else {
+				newNames.add(name);
+			}
+		}
+		LOGGER.debug("incremental query of net service data [highWaterMark={}, known names={}, new names={}]",
+				snapshot.getHighWaterMark(), knownNames.size(), newNames.size());
+
+		final Map<String, TnsEntry> changedTnsEntries = new HashMap<String, TnsEntry>();
+		TnsEntryPageHandler collector = new TnsEntryPageHandler() {
+			@Override
+			public void handlePage(List<TnsEntry> page) {
+				for (TnsEntry entry : page) {
+					changedTnsEntries.put(entry.getNetServiceName(), entry);
+				}
+			}
+		};
+		resetQueryStatistics();
+		queryTnsEntries(knownNames,
+				"(modifyTimestamp>=" + Utils.escapeLdapFilterValue(snapshot.getHighWaterMark()) + ")", collector);
+		String highWaterMark = this.mLastQueryHighWaterMark;
+		queryTnsEntries(newNames, null, collector);
+		if (highWaterMark == null || (this.mLastQueryHighWaterMark != null
+				&& this.mLastQueryHighWaterMark.compareTo(highWaterMark) > 0)) {
+			highWaterMark = this.mLastQueryHighWaterMark;
+		}
+		LOGGER.info("incremental ldap query finished ({} changed or new entries)", changedTnsEntries.size());
+
+		snapshot.merge(newNames, changedTnsEntries, highWaterMark);
+		return snapshot.getEntries(filterCnList);
+	}
+
+	/*
+	 * Queries the net services and hands over the found entries to the
+	 * pageHandler page by page (RFC 2696 simple paged results), so only one page
+	 * of search results is held in memory at a time.
+	 */
+	public void queryTnsEntries(List<String> filterCnList, TnsEntryPageHandler pageHandler) throws AppException {
+		resetQueryStatistics();
+		queryTnsEntries(filterCnList, null, pageHandler);
+	}
+
+	private void resetQueryStatistics() {
+		this.mLastQueryPageCount = 0;
+		this.mLastQueryConnectNanos = 0;
+		this.mLastQueryPageLatencies.clear();
+	}
+
+	private void queryTnsEntries(List<String> filterCnList, String extraFilter, TnsEntryPageHandler pageHandler)
+			throws AppException {
 		LOGGER.debug(
-				"start queryTnsEntryMap: querying of net service data (objectClass: orclNetService) from ldap server");
-		NamingEnumeration<SearchResult> namingEnum;
-		Map<String, TnsEntry> resultTnsEntries = new HashMap<String, TnsEntry>();
+				"start queryTnsEntries: querying of net service data (objectClass: orclNetService, orclNetServiceAlias) from ldap server");
+		this.mLastQueryHighWaterMark = null;
 
 		if (filterCnList != null && filterCnList.size() > 0) {
+			List<ContextSearch> searches = createContextSearches(filterCnList, extraFilter);
+			boolean reusedCtx = this.mCtx != null;
 			try {
-				namingEnum = getCtx().search(this.mAdminContext, "(objectClass=orclNetService)",
-						getSimpleSearchControls());
-				while (namingEnum.hasMore()) {
-					SearchResult result = (SearchResult) namingEnum.next();
-					Attributes attrs = result.getAttributes();
-					if (filterCnList.contains(attrs.get("cn").get().toString().toUpperCase())) {
-						TnsEntry entry = new TnsEntry(attrs.get("cn").get().toString(),
-								attrs.get("orclNetDescString").get().toString());
-						resultTnsEntries.put(entry.getNetServiceName(), entry);
-						LOGGER.debug("found {}", entry.toString());
+				try {
+					searchContexts(searches, pageHandler);
+				} catch (CommunicationException | ServiceUnavailableException e) {
+					if (!reusedCtx) {
+						throw e;
 					}
+					// the connection of a reused context may have been dropped by the server
+					LOGGER.warn("connection to LDAP server lost ({}), reconnecting", e.getMessage());
+					close();
+					searchContexts(searches, pageHandler);
 				}
-				namingEnum.close();
 			} catch (NamingException e) {
+				if (this.mServerHealth != null && this.mConnectedServer != null) {
+					this.mServerHealth.recordFailure(this.mConnectedServer);
+					saveServerHealth();
+				}
+				close();
 				throw new AppException("failed to query TnsEntryList from LDAP Server, error message: " + e.getMessage()
 						+ ", Caused by:" + e.getCause());
+			} catch (IOException e) {
+				throw new AppException("failed to create paged results control, error message: " + e.getMessage()
+						+ ", Caused by:" + e.getCause());
 			}
+			LOGGER.info("ldap query finished ({} page(s), max page latency: {} ms)", this.mLastQueryPageCount,
+					getMaxPageLatency());
 		} else {
 			LOGGER.debug("list is empty, skip search");
 		}
 
-		LOGGER.debug("end queryTnsEntryMap");
-		return resultTnsEntries;
+		LOGGER.debug("end queryTnsEntries");
+	}
+
+	/*
+	 * Groups the requested names by admin context: a name qualified with a
+	 * domain of ldap.ora is searched under the admin context of the domain by
+	 * its first part, the found entries get the domain back.
+	 */
+	private List<ContextSearch> createContextSearches(List<String> filterCnList, String extraFilter) {
+		Map<String, ContextSearch> searches = new LinkedHashMap<String, ContextSearch>();
+		for (String cn : filterCnList) {
+			String name = cn.toUpperCase();
+			String domain = getAdminContextDomain(name);
+			ContextSearch search = searches.get(domain);
+			if (search == null) {
+				search = domain.isEmpty() ? new ContextSearch(this.mAdminContext, "")
+						: new ContextSearch(this.mDomainAdminContexts.get(domain), "." + domain);
+				searches.put(domain, search);
+			}
+			search.mCnSet.add(name.substring(0, name.length() - search.mNameSuffix.length()));
+		}
+
+		for (ContextSearch search : searches.values()) {
+			List<String> assertions = new ArrayList<String>();
+			for (String cn : search.mCnSet) {
+				// patterns become substring filters, the directory server does the matching
+				assertions.add("(cn=" + NamePatternMatcher.toLdapFilterValue(cn) + ")");
+			}
+			search.mFilters = getBatchedSearchFilters(assertions, extraFilter);
+			LOGGER.debug("{} net service names are queried in {} batch(es) under {} [batchSize={}, pageSize={}]",
+					search.mCnSet.size(), search.mFilters.size(), search.mAdminContext, this.mFilterBatchSize,
+					this.mPageSize);
+		}
+		return new ArrayList<ContextSearch>(searches.values());
+	}
+
+	/*
+	 * the longest domain of the name having an admin context, an empty string
+	 * if there is none
+	 */
+	private String getAdminContextDomain(String name) {
+		if (this.mDomainAdminContexts.isEmpty()) {
+			return "";
+		}
+		for (int dot = name.indexOf('.'); dot > 0; dot = name.indexOf('.', dot + 1)) {
+			String domain = name.substring(dot + 1);
+			if (this.mDomainAdminContexts.containsKey(domain)) {
+				return domain;
+			}
+		}
+		return "";
+	}
+
+	/*
+	 * Searches the admin contexts concurrently, on the connection of the handler
+	 * and on further connections to the same directory server. These form the
+	 * connection pool of the handler: they are opened when first needed and
+	 * kept until close, like the connection of the handler, so the next query
+	 * reuses them. A query spanning several admin contexts takes about the
+	 * latency of the slowest one instead of the sum of them. The page handler
+	 * is called by one search at a time.
+	 */
+	private void searchContexts(List<ContextSearch> searches, TnsEntryPageHandler pageHandler)
+			throws NamingException, IOException, AppException {
+		LdapContext ctx = getCtx();
+		if (searches.size() == 1) {
+			searchContext(ctx, searches.get(0), pageHandler);
+			return;
+		}
+
+		final BlockingQueue<LdapContext> idleCtxs = new LinkedBlockingQueue<LdapContext>();
+		idleCtxs.add(ctx);
+		idleCtxs.addAll(this.mSearchCtxs);
+		this.mSearchCtxs.clear();
+		final Hashtable<String, Object> env = createEnvironment();
+		final String server = this.mConnectedServer;
+		final TnsEntryPageHandler synchronizedPageHandler = new SynchronizedPageHandler(pageHandler);
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(searches.size(), APP_DEFAULT_LDAP_SEARCH_THREADS), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "tnssync-ldap-search");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		Throwable failure = null;
+		try {
+			for (final ContextSearch search : searches) {
+				results.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						LdapContext searchCtx = idleCtxs.poll();
+						if (searchCtx == null) {
+							try {
+								searchCtx = connect(server, env, null);
+							} catch (NamingException e) {
+								// the search waits for a connection of the pool
+								LOGGER.debug("additional connection failed to LDAP server [{}]: {}", server,
+										e.getMessage());
+								searchCtx = idleCtxs.take();
+							}
+						}
+						try {
+							searchContext(searchCtx, search, synchronizedPageHandler);
+						} finally {
+							idleCtxs.add(searchCtx);
+						}
+						return null;
+					}
+				}));
+			}
+			// all the searches are waited for, so their connections are idle afterwards
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AppException("interrupted while querying LDAP Server [providerURLs: " + this.mProviderURLs + "]");
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for (LdapContext idleCtx : idleCtxs) {
+			if (idleCtx != ctx) {
+				this.mSearchCtxs.add(idleCtx);
+			}
+		}
+		LOGGER.debug("{} admin contexts searched on {} connection(s)", searches.size(), this.mSearchCtxs.size() + 1);
+		if (failure != null) {
+			throwSearchFailure(failure);
+		}
+	}
+
+	private static void throwSearchFailure(Throwable cause) throws NamingException, IOException, AppException {
+		if (cause instanceof NamingException) {
+			throw (NamingException) cause;
+		} else if (cause instanceof IOException) {
+			throw (IOException) cause;
+		} else if (cause instanceof AppException) {
+			throw (AppException) cause;
+		} else if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		throw new AppException("failed to query TnsEntryList from LDAP Server: " + Utils.getStackTrace(cause));
+	}
+
+	private void searchContext(LdapContext ctx, ContextSearch search, TnsEntryPageHandler pageHandler)
+			throws NamingException, IOException, AppException {
+		Map<String, String> aliases = new LinkedHashMap<String, String>();
+		NetServiceResultHandler resultHandler = new NetServiceResultHandler(new NamePatternMatcher(search.mCnSet),
+				search.mNameSuffix, aliases, pageHandler);
+		for (String filter : search.mFilters) {
+			searchPaged(ctx, search.mAdminContext, filter, resultHandler);
+		}
+		resolveAliases(ctx, search.mAdminContext, aliases, pageHandler);
+	}
+
+	private void searchPaged(LdapContext ctx, String adminContext, String filter, SearchResultHandler resultHandler)
+			throws NamingException, IOException, AppException {
+		byte[] cookie = null;
+		try {
+			do {
+				ctx.setRequestControls(
+						new Control[] { new PagedResultsControl(this.mPageSize, cookie, Control.NONCRITICAL) });
+				long pageStart = System.nanoTime();
+				int pageResults = 0;
+				NamingEnumeration<SearchResult> namingEnum = ctx.search(adminContext, filter,
+						getSimpleSearchControls());
+				try {
+					while (namingEnum.hasMore()) {
+						resultHandler.handleResult(namingEnum.next());
+						pageResults++;
+					}
+				} finally {
+					namingEnum.close();
+				}
+				long pageLatency = (System.nanoTime() - pageStart) / 1000000L;
+				LOGGER.debug("page {} received ({} entries, {} ms)", recordPage(pageLatency), pageResults,
+						pageLatency);
+
+				resultHandler.handlePageEnd();
+				cookie = getPagedResultsCookie(ctx.getResponseControls());
+			} while (cookie != null && cookie.length > 0);
+		} finally {
+			ctx.setRequestControls(null);
+		}
+	}
+
+	/*
+	 * counts the page, returns its number (the searches of the admin contexts
+	 * record their pages concurrently)
+	 */
+	private synchronized int recordPage(long pageLatency) {
+		this.mLastQueryPageLatencies.add(pageLatency);
+		return ++this.mLastQueryPageCount;
+	}
+
+	/*
+	 * Net service aliases (orclNetServiceAlias) point at their target with
+	 * aliasedObjectName. The targets of all aliases found by the query are
+	 * fetched together in one batched search (by the RDN of their DN, under the
+	 * admin context of the alias), targets being aliases again are followed level by level
+	 * up to MAX_ALIAS_CHAIN_LENGTH. Cycles, too long chains and missing targets
+	 * are logged and the alias is left out. The aliases of a target share the
+	 * descriptor string of the target. In an incremental query an alias is
+	 * refreshed only if the alias entry itself is modified (or at the next full
+	 * query).
+	 */
+	private void resolveAliases(LdapContext ctx, String adminContext, Map<String, String> aliases,
+			TnsEntryPageHandler pageHandler) throws NamingException, IOException, AppException {
+		if (aliases.isEmpty()) {
+			return;
+		}
+		LOGGER.debug("start resolveAliases [{} aliases]", aliases.size());
+		AliasTargetResultHandler targetHandler = new AliasTargetResultHandler();
+		Set<LdapName> pending = new HashSet<LdapName>();
+		for (String targetDn : aliases.values()) {
+			pending.add(new LdapName(targetDn));
+		}
+		int searches = 0;
+		for (int level = 0; level < MAX_ALIAS_CHAIN_LENGTH && !pending.isEmpty(); level++) {
+			List<String> assertions = new ArrayList<String>();
+			for (LdapName dn : pending) {
+				Rdn rdn = dn.getRdn(dn.size() - 1);
+				assertions.add("(" + rdn.getType() + "="
+						+ Utils.escapeLdapFilterValue(rdn.getValue().toString()) + ")");
+			}
+			targetHandler.mRequested.addAll(pending);
+			for (String filter : getBatchedSearchFilters(assertions, null)) {
+				searchPaged(ctx, adminContext, filter, targetHandler);
+				searches++;
+			}
+			pending = new HashSet<LdapName>();
+			for (LdapName next : targetHandler.mNextTargets.values()) {
+				if (!targetHandler.mRequested.contains(next)) {
+					pending.add(next);
+				}
+			}
+		}
+
+		List<TnsEntry> page = new ArrayList<TnsEntry>();
+		for (Map.Entry<String, String> alias : aliases.entrySet()) {
+			LdapName target = new LdapName(alias.getValue());
+			Set<LdapName> chain = new HashSet<LdapName>();
+			String problem = null;
+			while (problem == null && !targetHandler.mDescriptors.containsKey(target)) {
+				if (!chain.add(target)) {
+					problem = "alias cycle";
+				} else if (!targetHandler.mRequested.contains(target)) {
+					problem = "alias chain longer than " + MAX_ALIAS_CHAIN_LENGTH;
+				} else if (!targetHandler.mNextTargets.containsKey(target)) {
+					problem = "alias target not found";
+				} else {
+					target = targetHandler.mNextTargets.get(target);
+				}
+			}
+			if (problem != null) {
+				LOGGER.warn("net service alias {} is skipped, {} ({})", alias.getKey(), problem, target.toString());
+				continue;
+			}
+			TnsEntry entry = new TnsEntry(alias.getKey(), targetHandler.mDescriptors.get(target));
+			page.add(entry);
+			LOGGER.debug("found {}", entry.toString());
+		}
+		pageHandler.handlePage(page);
+		LOGGER.debug("end resolveAliases, {} of {} aliases resolved in {} search(es)", page.size(), aliases.size(),
+				searches);
+	}
+
+	private byte[] getPagedResultsCookie(Control[] responseControls) {
+		if (responseControls != null) {
+			for (Control control : responseControls) {
+				if (control instanceof PagedResultsResponseControl) {
+					return ((PagedResultsResponseControl) control).getCookie();
+				}
+			}
+		}
+		return null;
+	}
+
+	private long getMaxPageLatency() {
+		long max = 0;
+		for (Long latency : this.mLastQueryPageLatencies) {
+			max = Math.max(max, latency);
+		}
+		return max;
+	}
+
+	/*
+	 * same as the key of the ldap.ora the handler was created from
+	 */
+	public String getDirectoryKey() {
+		return getDirectoryKey(this.mProviderURLs, this.mAdminContext, this.mDomainAdminContexts);
+	}
+
+	public static String getDirectoryKey(String providerURLs, String adminContext,
+			Map<String, String> domainAdminContexts) {
+		StringBuilder sb = new StringBuilder(providerURLs).append('|').append(adminContext);
+		for (Map.Entry<String, String> domainAdminContext : new TreeMap<String, String>(domainAdminContexts)
+				.entrySet()) {
+			sb.append('|').append(domainAdminContext.getKey()).append('=').append(domainAdminContext.getValue());
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * the directory server of the current connection
+	 */
+	public String getConnectedServer() {
+		return mConnectedServer;
+	}
+
+	public String getLastQueryHighWaterMark() {
+		return mLastQueryHighWaterMark;
+	}
+
+	public int getLastQueryPageCount() {
+		return mLastQueryPageCount;
+	}
+
+	public List<Long> getLastQueryPageLatencies() {
+		return mLastQueryPageLatencies;
+	}
+
+	/*
+	 * time spent connecting during the last query, 0 if the connection was
+	 * reused
+	 */
+	public long getLastQueryConnectNanos() {
+		return mLastQueryConnectNanos;
+	}
+
+	private synchronized void updateHighWaterMark(Attributes attrs) throws NamingException {
+		Attribute modifyTimestampAttr = attrs.get("modifyTimestamp");
+		if (modifyTimestampAttr != null) {
+			String modifyTimestamp = modifyTimestampAttr.get().toString();
+			if (this.mLastQueryHighWaterMark == null || modifyTimestamp.compareTo(this.mLastQueryHighWaterMark) > 0) {
+				this.mLastQueryHighWaterMark = modifyTimestamp;
+			}
+		}
+	}
+
+	/*
+	 * A net service may have more than one cn value, the one requested in
+	 * tnssync.ora (or the first one matching a requested pattern) is used as the
+	 * name of the entry, followed by the domain of the admin context. The target
+	 * of an alias is put into aliases, the alias itself is resolved later.
+	 */
+	private TnsEntry createTnsEntry(Attributes attrs, NamePatternMatcher cnMatcher, String nameSuffix,
+			Map<String, String> aliases) throws NamingException {
+		Attribute cnAttr = attrs.get("cn");
+		Attribute descAttr = attrs.get("orclNetDescString");
+		Attribute aliasAttr = attrs.get("aliasedObjectName");
+		if (cnAttr == null || (descAttr == null && aliasAttr == null)) {
+			LOGGER.debug("skip search result without cn or orclNetDescString or aliasedObjectName attribute [{}]",
+					attrs.toString());
+			return null;
+		}
+		updateHighWaterMark(attrs);
+
+		NamingEnumeration<?> cnValues = cnAttr.getAll();
+		try {
+			while (cnValues.hasMore()) {
+				String cn = cnValues.next().toString();
+				if (cnMatcher.matches(cn)) {
+					if (descAttr == null) {
+						LOGGER.debug("found alias {} -> {}", cn + nameSuffix, aliasAttr.get().toString());
+						aliases.put(cn + nameSuffix, aliasAttr.get().toString());
+						return null;
+					}
+					return new TnsEntry(cn + nameSuffix, descAttr.get().toString());
+				}
+			}
+		} finally {
+			cnValues.close();
+		}
+		return null;
+	}
+
+	private List<String> getBatchedSearchFilters(List<String> assertions, String extraFilter) {
+		List<String> filters = new ArrayList<String>();
+		for (int from = 0; from < assertions.size(); from += this.mFilterBatchSize) {
+			int to = Math.min(from + this.mFilterBatchSize, assertions.size());
+			StringBuilder sb = new StringBuilder("(&").append(NET_SERVICE_FILTER);
+			if (extraFilter != null) {
+				sb.append(extraFilter);
+			}
+			sb.append("(|");
+			for (String assertion : assertions.subList(from, to)) {
+				sb.append(assertion);
+			}
+			sb.append("))");
+			filters.add(sb.toString());
+		}
+		return filters;
 	}
 
 	private SearchControls getSimpleSearchControls() {
 		SearchControls sc = new SearchControls();
 		sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
+		sc.setReturningAttributes(RETURNING_ATTRIBUTES);
 		return sc;
 
 	}
+
+	/*
+	 * receives the results of a paged search, and the end of each page
+	 */
+	private interface SearchResultHandler {
+
+		public void handleResult(SearchResult result) throws NamingException;
+
+		public void handlePageEnd() throws AppException;
+	}
+
+	/*
+	 * creates the net service entries of the results and hands them over page
+	 * by page, collects the aliases
+	 */
+	private class NetServiceResultHandler implements SearchResultHandler {
+		private final NamePatternMatcher mCnMatcher;
+		private final String mNameSuffix;
+		private final Map<String, String> mAliases;
+		private final TnsEntryPageHandler mPageHandler;
+		private List<TnsEntry> mPage = new ArrayList<TnsEntry>();
+
+		private NetServiceResultHandler(NamePatternMatcher cnMatcher, String nameSuffix, Map<String, String> aliases,
+				TnsEntryPageHandler pageHandler) {
+			mCnMatcher = cnMatcher;
+			mNameSuffix = nameSuffix;
+			mAliases = aliases;
+			mPageHandler = pageHandler;
+		}
+
+		@Override
+		public void handleResult(SearchResult result) throws NamingException {
+			TnsEntry entry = createTnsEntry(result.getAttributes(), mCnMatcher, mNameSuffix, mAliases);
+			if (entry != null) {
+				mPage.add(entry);
+				LOGGER.debug("found {}", entry.toString());
+			}
+		}
+
+		@Override
+		public void handlePageEnd() throws AppException {
+			mPageHandler.handlePage(mPage);
+			mPage = new ArrayList<TnsEntry>();
+		}
+	}
+
+	/*
+	 * collects the descriptor (or the next target) of the requested alias
+	 * targets by their DN
+	 */
+	private static class AliasTargetResultHandler implements SearchResultHandler {
+		private final Set<LdapName> mRequested = new HashSet<LdapName>();
+		private final Map<LdapName, String> mDescriptors = new HashMap<LdapName, String>();
+		private final Map<LdapName, LdapName> mNextTargets = new HashMap<LdapName, LdapName>();
+
+		@Override
+		public void handleResult(SearchResult result) throws NamingException {
+			LdapName dn = new LdapName(result.getNameInNamespace());
+			if (!mRequested.contains(dn)) {
+				return;
+			}
+			Attribute descAttr = result.getAttributes().get("orclNetDescString");
+			Attribute aliasAttr = result.getAttributes().get("aliasedObjectName");
+			if (descAttr != null) {
+				// trimmed once, so the aliases share one string
+				mDescriptors.put(dn, descAttr.get().toString().trim());
+			} else if (aliasAttr != null) {
+				mNextTargets.put(dn, new LdapName(aliasAttr.get().toString()));
+			}
+		}
+
+		@Override
+		public void handlePageEnd() {
+		}
+	}
+
+	/*
+	 * the requested names of one admin context (without the domain, which is
+	 * the suffix of the found names) and the search filters of them
+	 */
+	private static class ContextSearch {
+		private final String mAdminContext;
+		private final String mNameSuffix;
+		private final Set<String> mCnSet = new HashSet<String>();
+		private List<String> mFilters;
+
+		private ContextSearch(String adminContext, String nameSuffix) {
+			mAdminContext = adminContext;
+			mNameSuffix = nameSuffix;
+		}
+	}
+
+	private static class SynchronizedPageHandler implements TnsEntryPageHandler {
+		private final TnsEntryPageHandler mPageHandler;
+
+		private SynchronizedPageHandler(TnsEntryPageHandler pageHandler) {
+			mPageHandler = pageHandler;
+		}
+
+		@Override
+		public synchronized void handlePage(List<TnsEntry> page) throws AppException {
+			mPageHandler.handlePage(page);
+		}
+	}
 }
@@ -0,0 +1,112 @@
+package com.aleerant.tnssync;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Directory server settings of a TNS_ADMIN directory read from its ldap.ora
+ * file. Besides DEFAULT_ADMIN_CONTEXT the admin context of a domain can be
+ * given with an ADMIN_CONTEXT.<DOMAIN> parameter, domain qualified net
+ * service names of tnssync.ora (NAME.<DOMAIN>) are searched there:
+ *
+ *   ADMIN_CONTEXT.EU.ACME.COM = "cn=OracleContext,dc=eu,dc=acme,dc=com"
+ */
+public class LdapOraFile implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LdapOraFile.class);
+
+	private Path mLdapOraPath;
+	private static final String DOMAIN_ADMIN_CONTEXT_PREFIX = "ADMIN_CONTEXT.";
+
+	private String mDefaultAdminContext, mDirectoryServers;
+	private Map<String, String> mDomainAdminContexts;
+	private FileTime mLastModified;
+
+	public LdapOraFile(Path tnsAdminPath) throws AppException {
+		mLdapOraPath = Paths.get(tnsAdminPath.toString(), APP_LDAPORA_FILENAME);
+		read();
+	}
+
+	private void read() throws AppException {
+		LOGGER.debug("reading {} file [{}]", APP_LDAPORA_FILENAME, mLdapOraPath.toString());
+		String ldaporaFile = mLdapOraPath.toString();
+		Properties ldapOraProperties = new Properties();
+		try (FileInputStream in = new FileInputStream(ldaporaFile)) {
+			this.mLastModified = Files.getLastModifiedTime(mLdapOraPath);
+			ldapOraProperties.load(in);
+		} catch (FileNotFoundException e) {
+			throw new AppException(APP_LDAPORA_FILENAME + " file is missing (" + ldaporaFile + "), error message: "
+					+ e.getMessage() + ", caused by:" + e.getCause());
+		} catch (IOException e) {
+			throw new AppException("can not read " + APP_LDAPORA_FILENAME + " file (" + ldaporaFile
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+
+		String defaultAdminContext = ldapOraProperties.getProperty("DEFAULT_ADMIN_CONTEXT");
+		if (defaultAdminContext == null) {
+			throw new IllegalArgumentException("Missing parameter: DEFAULT_ADMIN_CONTEXT");
+		}
+		this.mDefaultAdminContext = defaultAdminContext.replaceAll("[()\\s]", "");
+		this.mDirectoryServers = ldapOraProperties.getProperty("DIRECTORY_SERVERS", "").replaceAll("[()\\s]", "");
+
+		Map<String, String> domainAdminContexts = new TreeMap<String, String>();
+		for (String name : ldapOraProperties.stringPropertyNames()) {
+			if (name.toUpperCase().startsWith(DOMAIN_ADMIN_CONTEXT_PREFIX)
+					&& name.length() > DOMAIN_ADMIN_CONTEXT_PREFIX.length()) {
+				domainAdminContexts.put(name.substring(DOMAIN_ADMIN_CONTEXT_PREFIX.length()).toUpperCase(),
+						ldapOraProperties.getProperty(name).replaceAll("[()\\s]", ""));
+			}
+		}
+		this.mDomainAdminContexts = Collections.unmodifiableMap(domainAdminContexts);
+	}
+
+	/*
+	 * reads ldap.ora again if its modification time has changed, returns true if
+	 * it was read
+	 */
+	public boolean reloadIfModified() throws AppException {
+		try {
+			if (Files.getLastModifiedTime(mLdapOraPath).equals(this.mLastModified)) {
+				return false;
+			}
+		} catch (IOException e) {
+			throw new AppException("can not read " + APP_LDAPORA_FILENAME + " file (" + mLdapOraPath.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+		read();
+		return true;
+	}
+
+	public String getDefaultAdminContext() {
+		return mDefaultAdminContext;
+	}
+
+	public String getDirectoryServers() {
+		return mDirectoryServers;
+	}
+
+	/*
+	 * admin contexts by domain (upper case), in domain order
+	 */
+	public Map<String, String> getDomainAdminContexts() {
+		return mDomainAdminContexts;
+	}
+
+	/*
+	 * TNS_ADMIN directories with the same key are served by the same directory
+	 * servers and admin contexts
+	 */
+	public String getDirectoryKey() {
+		return LdapHandler.getDirectoryKey(mDirectoryServers, mDefaultAdminContext, mDomainAdminContexts);
+	}
+}
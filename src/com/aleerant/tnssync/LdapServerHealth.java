@@ -0,0 +1,181 @@
+package com.aleerant.tnssync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Connection statistics of the directory servers kept between runs: last
+ * success, consecutive failures and the moving average (EWMA) of the connect
+ * latency. The servers are tried in the order of their health, and a server
+ * failing FAILURE_THRESHOLD times in a row is skipped until its cool-down
+ * expires (circuit breaker). After the cool-down one attempt is allowed again
+ * (half-open): a success closes the circuit, a failure opens it again.
+ */
+public class LdapServerHealth implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LdapServerHealth.class);
+
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final double EWMA_WEIGHT = 0.3;
+
+	private final Path mHealthFilePath;
+	private final long mCooldownMillis;
+	private Map<String, ServerStat> mStats = new HashMap<String, ServerStat>();
+	private boolean mModified;
+
+	private static class ServerStat {
+		long lastSuccess;
+		int consecutiveFailures;
+		double latencyEwma = -1;
+		long openUntil;
+	}
+
+	private LdapServerHealth(Path healthFilePath, long cooldownMillis) {
+		mHealthFilePath = healthFilePath;
+		mCooldownMillis = cooldownMillis;
+	}
+
+	/*
+	 * reads the statistics of the TNS_ADMIN directory, missing or unreadable
+	 * file means no statistics
+	 */
+	public static LdapServerHealth load(Path tnsAdminPath, long cooldownMillis) {
+		LdapServerHealth health = new LdapServerHealth(Paths.get(tnsAdminPath.toString(), APP_SERVER_HEALTH_FILENAME),
+				cooldownMillis);
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(health.mHealthFilePath)) {
+			properties.load(in);
+			for (String key : properties.stringPropertyNames()) {
+				if (!key.endsWith(".lastSuccess")) {
+					continue;
+				}
+				String server = key.substring(0, key.length() - ".lastSuccess".length());
+				ServerStat stat = new ServerStat();
+				stat.lastSuccess = Long.parseLong(properties.getProperty(server + ".lastSuccess", "0"));
+				stat.consecutiveFailures = Integer.parseInt(properties.getProperty(server + ".failures", "0"));
+				stat.latencyEwma = Double.parseDouble(properties.getProperty(server + ".latency", "-1"));
+				stat.openUntil = Long.parseLong(properties.getProperty(server + ".openUntil", "0"));
+				health.mStats.put(server, stat);
+			}
+		} catch (NoSuchFileException e) {
+			LOGGER.debug("server health file is missing [{}]", health.mHealthFilePath.toString());
+		} catch (IOException | NumberFormatException e) {
+			LOGGER.warn("can not read server health file ({}), ignoring it, error message: {}",
+					health.mHealthFilePath.toString(), e.getMessage());
+			health.mStats.clear();
+		}
+		return health;
+	}
+
+	public synchronized void save() throws AppException {
+		if (!mModified) {
+			return;
+		}
+		Properties properties = new Properties();
+		for (Map.Entry<String, ServerStat> entry : mStats.entrySet()) {
+			ServerStat stat = entry.getValue();
+			properties.setProperty(entry.getKey() + ".lastSuccess", String.valueOf(stat.lastSuccess));
+			properties.setProperty(entry.getKey() + ".failures", String.valueOf(stat.consecutiveFailures));
+			properties.setProperty(entry.getKey() + ".latency", String.valueOf(stat.latencyEwma));
+			properties.setProperty(entry.getKey() + ".openUntil", String.valueOf(stat.openUntil));
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			properties.store(out, APP_NAME + " directory server statistics");
+			Utils.writeFileAtomically(mHealthFilePath, out.toByteArray());
+			mModified = false;
+		} catch (IOException e) {
+			throw new AppException("can not write server health file (" + mHealthFilePath.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+	}
+
+	/*
+	 * Orders the servers: healthy servers by their connect latency first
+	 * (servers without statistics keep their ldap.ora order after the measured
+	 * ones), then the servers to be probed after their cool-down. Servers with
+	 * an open circuit are left out, unless every server is open.
+	 */
+	public synchronized List<String> rank(List<String> servers) {
+		final long now = System.currentTimeMillis();
+		final List<String> ldapOraOrder = new ArrayList<String>(servers);
+		List<String> result = new ArrayList<String>();
+		for (String server : servers) {
+			ServerStat stat = mStats.get(server);
+			if (stat == null || stat.openUntil <= now) {
+				result.add(server);
+			} else {
+				LOGGER.debug("circuit of LDAP server [{}] is open until {}, skipping it", server,
+						new java.sql.Timestamp(stat.openUntil));
+			}
+		}
+		if (result.isEmpty()) {
+			LOGGER.debug("circuit of every LDAP server is open, trying all of them");
+			result.addAll(servers);
+		}
+
+		Collections.sort(result, new Comparator<String>() {
+			@Override
+			public int compare(String one, String two) {
+				int c = Integer.compare(rankClass(mStats.get(one)), rankClass(mStats.get(two)));
+				if (c == 0 && rankClass(mStats.get(one)) == 0) {
+					c = Double.compare(mStats.get(one).latencyEwma, mStats.get(two).latencyEwma);
+				}
+				return c != 0 ? c : Integer.compare(ldapOraOrder.indexOf(one), ldapOraOrder.indexOf(two));
+			}
+		});
+		LOGGER.debug("LDAP servers in order of health: {}", result.toString());
+		return result;
+	}
+
+	// 0: healthy and measured, 1: no statistics, 2: recently failed
+	private static int rankClass(ServerStat stat) {
+		if (stat == null || stat.latencyEwma < 0) {
+			return stat != null && stat.consecutiveFailures > 0 ? 2 : 1;
+		}
+		return stat.consecutiveFailures > 0 ? 2 : 0;
+	}
+
+	public synchronized void recordSuccess(String server, long latencyMillis) {
+		ServerStat stat = getStat(server);
+		stat.lastSuccess = System.currentTimeMillis();
+		stat.consecutiveFailures = 0;
+		stat.openUntil = 0;
+		stat.latencyEwma = stat.latencyEwma < 0 ? latencyMillis
+				: EWMA_WEIGHT * latencyMillis + (1 - EWMA_WEIGHT) * stat.latencyEwma;
+		mModified = true;
+	}
+
+	public synchronized void recordFailure(String server) {
+		ServerStat stat = getStat(server);
+		stat.consecutiveFailures++;
+		if (stat.consecutiveFailures >= FAILURE_THRESHOLD) {
+			stat.openUntil = System.currentTimeMillis() + mCooldownMillis;
+			LOGGER.debug("circuit of LDAP server [{}] is opened after {} failures", server,
+					stat.consecutiveFailures);
+		}
+		mModified = true;
+	}
+
+	private ServerStat getStat(String server) {
+		ServerStat stat = mStats.get(server);
+		if (stat == null) {
+			stat = new ServerStat();
+			mStats.put(server, stat);
+		}
+		return stat;
+	}
+}
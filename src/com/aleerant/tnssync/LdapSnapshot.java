@@ -0,0 +1,226 @@
+package com.aleerant.tnssync;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Last known state of the net services queried from the directory server:
+ * the high-water mark (the highest modifyTimestamp seen), the time of the last
+ * full query and of the last successful query, the requested names and the
+ * found entries. It is stored in TNS_ADMIN next to tnssync.ora and used by the
+ * incremental synchronization, to skip the query within its time to live and
+ * in place of the directory server when it is not available.
+ */
+public class LdapSnapshot implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LdapSnapshot.class);
+
+	private static final int FORMAT_VERSION = 2;
+
+	private final Path mSnapshotFilePath;
+	private String mDirectoryKey = "";
+	private String mHighWaterMark = "";
+	private long mLastFullSync;
+	private long mLastRefresh;
+	private Set<String> mRequestedNames = new HashSet<String>();
+	private Map<String, TnsEntry> mEntries = new HashMap<String, TnsEntry>();
+	private boolean mModified;
+
+	private LdapSnapshot(Path snapshotFilePath) {
+		mSnapshotFilePath = snapshotFilePath;
+	}
+
+	/*
+	 * reads the snapshot of the TNS_ADMIN directory, an empty snapshot is
+	 * returned if the file is missing or unreadable
+	 */
+	public static LdapSnapshot load(Path tnsAdminPath) {
+		LdapSnapshot snapshot = new LdapSnapshot(Paths.get(tnsAdminPath.toString(), APP_SNAPSHOT_FILENAME));
+		LOGGER.debug("start loading snapshot [{}]", snapshot.mSnapshotFilePath.toString());
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(snapshot.mSnapshotFilePath), 65536))) {
+			if (in.readInt() != FORMAT_VERSION) {
+				LOGGER.debug("snapshot format is unknown, ignoring it");
+				return snapshot;
+			}
+			String directoryKey = in.readUTF();
+			String highWaterMark = in.readUTF();
+			long lastFullSync = in.readLong();
+			long lastRefresh = in.readLong();
+			Set<String> requestedNames = new HashSet<String>();
+			for (int i = in.readInt(); i > 0; i--) {
+				requestedNames.add(in.readUTF());
+			}
+			Map<String, TnsEntry> entries = new HashMap<String, TnsEntry>();
+			for (int i = in.readInt(); i > 0; i--) {
+				TnsEntry entry = new TnsEntry(in.readUTF(), in.readUTF());
+				entries.put(entry.getNetServiceName(), entry);
+			}
+			snapshot.mDirectoryKey = directoryKey;
+			snapshot.mHighWaterMark = highWaterMark;
+			snapshot.mLastFullSync = lastFullSync;
+			snapshot.mLastRefresh = lastRefresh;
+			snapshot.mRequestedNames = requestedNames;
+			snapshot.mEntries = entries;
+			LOGGER.debug("end loading snapshot [highWaterMark={}, entries={}]", highWaterMark, entries.size());
+		} catch (NoSuchFileException e) {
+			LOGGER.debug("snapshot file is missing [{}]", snapshot.mSnapshotFilePath.toString());
+		} catch (IOException e) {
+			LOGGER.warn("can not read snapshot file ({}), ignoring it, error message: {}",
+					snapshot.mSnapshotFilePath.toString(), e.getMessage());
+		}
+		return snapshot;
+	}
+
+	/*
+	 * writes the snapshot if it was modified since it was loaded or saved,
+	 * atomically (a crash never leaves a truncated snapshot)
+	 */
+	public void save() throws AppException {
+		if (!mModified) {
+			return;
+		}
+		LOGGER.debug("start saving snapshot [{}]", mSnapshotFilePath.toString());
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(65536);
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(mDirectoryKey);
+				out.writeUTF(mHighWaterMark);
+				out.writeLong(mLastFullSync);
+				out.writeLong(mLastRefresh);
+				out.writeInt(mRequestedNames.size());
+				for (String name : mRequestedNames) {
+					out.writeUTF(name);
+				}
+				out.writeInt(mEntries.size());
+				for (TnsEntry entry : mEntries.values()) {
+					out.writeUTF(entry.getNetServiceName());
+					out.writeUTF(entry.getNetDescriptionString());
+				}
+			}
+			Utils.writeFileAtomically(mSnapshotFilePath, bytes.toByteArray());
+			mModified = false;
+		} catch (IOException e) {
+			throw new AppException("can not write snapshot file (" + mSnapshotFilePath.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+		LOGGER.debug("end saving snapshot");
+	}
+
+	/*
+	 * true if the snapshot can be used as the base of an incremental query of the
+	 * given directory
+	 */
+	public boolean isUsable(String directoryKey, long fullSyncIntervalMillis) {
+		return mDirectoryKey.equals(directoryKey) && !mHighWaterMark.isEmpty()
+				&& System.currentTimeMillis() - mLastFullSync < fullSyncIntervalMillis;
+	}
+
+	/*
+	 * true if the snapshot was refreshed from the given directory within
+	 * ttlMillis and all the names have been requested already
+	 */
+	public boolean isFresh(String directoryKey, long ttlMillis, List<String> names) {
+		if (!mDirectoryKey.equals(directoryKey) || System.currentTimeMillis() - mLastRefresh >= ttlMillis) {
+			return false;
+		}
+		for (String name : names) {
+			if (!mRequestedNames.contains(name.toUpperCase())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * true if the snapshot holds the result of a query of the given directory
+	 */
+	public boolean hasData(String directoryKey) {
+		return mDirectoryKey.equals(directoryKey) && mLastRefresh > 0;
+	}
+
+	/*
+	 * replaces the whole state with the result of a full query
+	 */
+	public void replace(String directoryKey, Collection<String> requestedNames, Map<String, TnsEntry> entries,
+			String highWaterMark) {
+		mDirectoryKey = directoryKey;
+		mRequestedNames = new HashSet<String>();
+		for (String name : requestedNames) {
+			mRequestedNames.add(name.toUpperCase());
+		}
+		mEntries = new HashMap<String, TnsEntry>(entries);
+		mHighWaterMark = highWaterMark == null ? "" : highWaterMark;
+		mLastFullSync = System.currentTimeMillis();
+		mLastRefresh = mLastFullSync;
+		mModified = true;
+	}
+
+	/*
+	 * merges the result of an incremental query into the state
+	 */
+	public void merge(Collection<String> newRequestedNames, Map<String, TnsEntry> changedEntries,
+			String highWaterMark) {
+		for (String name : newRequestedNames) {
+			mRequestedNames.add(name.toUpperCase());
+		}
+		mEntries.putAll(changedEntries);
+		if (highWaterMark != null && highWaterMark.compareTo(mHighWaterMark) > 0) {
+			mHighWaterMark = highWaterMark;
+		}
+		mLastRefresh = System.currentTimeMillis();
+		mModified = true;
+	}
+
+	public Map<String, TnsEntry> getEntries(List<String> names) {
+		Map<String, TnsEntry> result = new HashMap<String, TnsEntry>();
+		List<String> patterns = new ArrayList<String>();
+		for (String name : names) {
+			if (NamePatternMatcher.isPattern(name)) {
+				patterns.add(name);
+				continue;
+			}
+			TnsEntry entry = mEntries.get(name.toUpperCase());
+			if (entry != null) {
+				result.put(entry.getNetServiceName(), entry);
+			}
+		}
+		if (!patterns.isEmpty()) {
+			NamePatternMatcher matcher = new NamePatternMatcher(patterns);
+			for (TnsEntry entry : mEntries.values()) {
+				if (matcher.matches(entry.getNetServiceName())) {
+					result.put(entry.getNetServiceName(), entry);
+				}
+			}
+		}
+		return result;
+	}
+
+	public Set<String> getRequestedNames() {
+		return mRequestedNames;
+	}
+
+	public String getHighWaterMark() {
+		return mHighWaterMark;
+	}
+
+	public long getLastRefresh() {
+		return mLastRefresh;
+	}
+}
@@ -0,0 +1,58 @@
+package com.aleerant.tnssync;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.Configurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.ConsoleAppender;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.LayoutBase;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.status.NopStatusListener;
+
+/*
+ * Default logging configuration, used when there is no logback configuration
+ * file. It is registered for the service loader of logback (see
+ * META-INF/services), so logback does not fall back to its BasicConfigurator,
+ * whose pattern layout loads the pattern parser, the converters and the date
+ * formatting classes at every start. The messages are written to the console
+ * as they are, the same as the former "%msg%n" pattern. A status listener is
+ * registered as well, otherwise logback loads its StatusPrinter (and with it
+ * SimpleDateFormat) after the configuration just to find nothing to print.
+ */
+public class LogbackConfigurator extends ContextAwareBase implements Configurator {
+
+	@Override
+	public void configure(LoggerContext loggerContext) {
+		configureConsole(loggerContext);
+		loggerContext.getStatusManager().add(new NopStatusListener());
+	}
+
+	public static void configureConsole(LoggerContext context) {
+		context.reset();
+		LayoutWrappingEncoder<ILoggingEvent> encoder = new LayoutWrappingEncoder<ILoggingEvent>();
+		MessageLayout layout = new MessageLayout();
+		layout.setContext(context);
+		layout.start();
+		encoder.setLayout(layout);
+		encoder.setContext(context);
+		encoder.start();
+		ConsoleAppender<ILoggingEvent> consoleAppender = new ConsoleAppender<ILoggingEvent>();
+		consoleAppender.setEncoder(encoder);
+		consoleAppender.setContext(context);
+		consoleAppender.start();
+		Logger rootLogger = context.getLogger(Logger.ROOT_LOGGER_NAME);
+		rootLogger.addAppender(consoleAppender);
+		rootLogger.setLevel(Level.INFO);
+		rootLogger.setAdditive(false);
+	}
+
+	private static class MessageLayout extends LayoutBase<ILoggingEvent> {
+		@Override
+		public String doLayout(ILoggingEvent event) {
+			return event.getFormattedMessage() + CoreConstants.LINE_SEPARATOR;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.aleerant.tnssync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Net service names and glob patterns of tnssync.ora (* matches any sequence
+ * of characters, ? matches one character, names are compared in upper case).
+ * The patterns are compiled once: exact names are looked up in a hash set and
+ * the wildcard patterns are indexed by their literal prefix, so a name is
+ * tested only against the patterns whose prefix it starts with instead of
+ * against every pattern.
+ */
+public class NamePatternMatcher {
+	private final Set<String> mExactNames = new HashSet<String>();
+	private final Map<String, Glob> mGlobs = new HashMap<String, Glob>();
+	private final Map<String, List<Glob>> mPrefixIndex = new HashMap<String, List<Glob>>();
+	private final TreeSet<Integer> mPrefixLengths = new TreeSet<Integer>();
+
+	public NamePatternMatcher(Collection<String> patterns) {
+		for (String pattern : patterns) {
+			String upperPattern = pattern.toUpperCase();
+			if (!isPattern(upperPattern)) {
+				mExactNames.add(upperPattern);
+			} else if (!mGlobs.containsKey(upperPattern)) {
+				Glob glob = new Glob(upperPattern);
+				mGlobs.put(upperPattern, glob);
+				String prefix = upperPattern.substring(0, firstWildcard(upperPattern));
+				List<Glob> globs = mPrefixIndex.get(prefix);
+				if (globs == null) {
+					globs = new ArrayList<Glob>(1);
+					mPrefixIndex.put(prefix, globs);
+				}
+				globs.add(glob);
+				mPrefixLengths.add(prefix.length());
+			}
+		}
+	}
+
+	public static boolean isPattern(String name) {
+		return firstWildcard(name) < name.length();
+	}
+
+	public static int countWildcards(String name) {
+		int count = 0;
+		for (int i = 0; i < name.length(); i++) {
+			if (isWildcard(name.charAt(i))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * assertion value of an LDAP equality or substring filter, ? is widened to
+	 * * (the exact match is checked on the client)
+	 */
+	public static String toLdapFilterValue(String pattern) {
+		StringBuilder sb = new StringBuilder(pattern.length());
+		int literalStart = 0;
+		for (int i = 0; i <= pattern.length(); i++) {
+			if (i == pattern.length() || isWildcard(pattern.charAt(i))) {
+				sb.append(Utils.escapeLdapFilterValue(pattern.substring(literalStart, i)));
+				if (i < pattern.length() && (sb.length() == 0 || sb.charAt(sb.length() - 1) != '*')) {
+					sb.append('*');
+				}
+				literalStart = i + 1;
+			}
+		}
+		return sb.toString();
+	}
+
+	public boolean matches(String name) {
+		return !match(name, true).isEmpty();
+	}
+
+	/*
+	 * the exact name and the patterns matching the name
+	 */
+	public List<String> getMatchingPatterns(String name) {
+		return match(name, false);
+	}
+
+	/*
+	 * The wildcards of the template are replaced by the parts of the name
+	 * matched by the wildcards of the pattern, in order. A template without
+	 * wildcards is returned as is.
+	 */
+	public String expand(String pattern, String template, String name) {
+		Glob glob = mGlobs.get(pattern.toUpperCase());
+		if (glob == null || !isPattern(template)) {
+			return template;
+		}
+		Matcher matcher = glob.mRegex.matcher(name.toUpperCase());
+		if (!matcher.matches()) {
+			return template;
+		}
+		StringBuilder sb = new StringBuilder(template.length() + name.length());
+		int group = 1;
+		for (int i = 0; i < template.length(); i++) {
+			char c = template.charAt(i);
+			if (isWildcard(c) && group <= matcher.groupCount()) {
+				sb.append(matcher.group(group++));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private List<String> match(String name, boolean firstOnly) {
+		String upperName = name.toUpperCase();
+		List<String> result = new ArrayList<String>(1);
+		if (mExactNames.contains(upperName)) {
+			result.add(upperName);
+			if (firstOnly) {
+				return result;
+			}
+		}
+		for (int length : mPrefixLengths) {
+			if (length > upperName.length()) {
+				break;
+			}
+			List<Glob> globs = mPrefixIndex.get(upperName.substring(0, length));
+			if (globs == null) {
+				continue;
+			}
+			for (Glob glob : globs) {
+				if (glob.mRegex.matcher(upperName).matches()) {
+					result.add(glob.mPattern);
+					if (firstOnly) {
+						return result;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int firstWildcard(String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (isWildcard(name.charAt(i))) {
+				return i;
+			}
+		}
+		return name.length();
+	}
+
+	private static boolean isWildcard(char c) {
+		return c == '*' || c == '?';
+	}
+
+	/*
+	 * a pattern compiled to a regular expression, each wildcard is a group
+	 */
+	private static class Glob {
+		private final String mPattern;
+		private final Pattern mRegex;
+
+		private Glob(String pattern) {
+			mPattern = pattern;
+			StringBuilder sb = new StringBuilder();
+			int literalStart = 0;
+			for (int i = 0; i <= pattern.length(); i++) {
+				if (i == pattern.length() || isWildcard(pattern.charAt(i))) {
+					if (i > literalStart) {
+						sb.append(Pattern.quote(pattern.substring(literalStart, i)));
+					}
+					if (i < pattern.length()) {
+						sb.append(pattern.charAt(i) == '*' ? "(.*)" : "(.)");
+					}
+					literalStart = i + 1;
+				}
+			}
+			mRegex = Pattern.compile(sb.toString(), Pattern.DOTALL);
+		}
+	}
+}
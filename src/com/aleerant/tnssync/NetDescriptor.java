@@ -0,0 +1,171 @@
+package com.aleerant.tnssync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Canonical form of Oracle Net connect descriptors, used to compare them. The
+ * descriptor is parsed into its tree of (KEYWORD=value) parameters and written
+ * again without the insignificant whitespace, with the keywords in upper case
+ * and with the parameters of each level sorted by keyword. The sort is stable
+ * and the address-like parameters (ADDRESS and ADDRESS_LIST, DESCRIPTION and
+ * DESCRIPTION_LIST) share one sort key, so their order, which is the order of
+ * the connect-time failover, is kept. Values are kept as they are (trimmed),
+ * quoted values are not touched at all. A descriptor that can not be parsed is
+ * compared by its trimmed text.
+ *
+ * The canonical strings are interned, so the entries sharing a descriptor
+ * (e.g. the aliases of one net service) share one instance, and the interned
+ * strings are collected by the JVM once no entry refers to them.
+ */
+public final class NetDescriptor {
+
+	private static final Comparator<Node> KEYWORD_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node one, Node two) {
+			return one.getSortKey().compareTo(two.getSortKey());
+		}
+	};
+
+	private final String mText;
+	private int mPos;
+
+	private NetDescriptor(String text) {
+		mText = text;
+	}
+
+	public static String canonicalize(String descriptor) {
+		String text = descriptor.trim();
+		List<Node> nodes = new NetDescriptor(text).parse();
+		if (nodes == null) {
+			return text.intern();
+		}
+		StringBuilder sb = new StringBuilder(text.length());
+		for (Node node : nodes) {
+			node.appendTo(sb);
+		}
+		return sb.toString().intern();
+	}
+
+	/*
+	 * (KEYWORD=...)[(KEYWORD=...) ...], null if the text is not a parameter
+	 * list
+	 */
+	private List<Node> parse() {
+		List<Node> nodes = parseNodes();
+		skipWhitespace();
+		return nodes == null || nodes.isEmpty() || mPos < mText.length() ? null : nodes;
+	}
+
+	private List<Node> parseNodes() {
+		List<Node> nodes = new ArrayList<Node>();
+		skipWhitespace();
+		while (mPos < mText.length() && mText.charAt(mPos) == '(') {
+			Node node = parseNode();
+			if (node == null) {
+				return null;
+			}
+			nodes.add(node);
+			skipWhitespace();
+		}
+		return nodes;
+	}
+
+	/*
+	 * (KEYWORD=value) or (KEYWORD=(...)(...))
+	 */
+	private Node parseNode() {
+		mPos++;
+		int start = mPos;
+		while (mPos < mText.length() && "=()\"".indexOf(mText.charAt(mPos)) < 0) {
+			mPos++;
+		}
+		if (mPos >= mText.length() || mText.charAt(mPos) != '=') {
+			return null;
+		}
+		Node node = new Node(mText.substring(start, mPos).trim().toUpperCase());
+		if (node.mKeyword.isEmpty()) {
+			return null;
+		}
+		mPos++;
+		skipWhitespace();
+		if (mPos < mText.length() && mText.charAt(mPos) == '(') {
+			node.mChildren = parseNodes();
+			if (node.mChildren == null) {
+				return null;
+			}
+			Collections.sort(node.mChildren, KEYWORD_ORDER);
+		} else {
+			node.mValue = parseValue();
+			if (node.mValue == null) {
+				return null;
+			}
+		}
+		if (mPos >= mText.length() || mText.charAt(mPos) != ')') {
+			return null;
+		}
+		mPos++;
+		return node;
+	}
+
+	/*
+	 * the value up to the closing parenthesis, quoted parts may contain
+	 * parentheses
+	 */
+	private String parseValue() {
+		int start = mPos;
+		boolean quoted = false;
+		while (mPos < mText.length()) {
+			char c = mText.charAt(mPos);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (!quoted && c == '(') {
+				return null;
+			} else if (!quoted && c == ')') {
+				return mText.substring(start, mPos).trim();
+			}
+			mPos++;
+		}
+		return null;
+	}
+
+	private void skipWhitespace() {
+		while (mPos < mText.length() && Character.isWhitespace(mText.charAt(mPos))) {
+			mPos++;
+		}
+	}
+
+	private static class Node {
+		private final String mKeyword;
+		private String mValue;
+		private List<Node> mChildren;
+
+		private Node(String keyword) {
+			mKeyword = keyword;
+		}
+
+		private String getSortKey() {
+			if (mKeyword.equals("ADDRESS_LIST")) {
+				return "ADDRESS";
+			}
+			if (mKeyword.equals("DESCRIPTION_LIST")) {
+				return "DESCRIPTION";
+			}
+			return mKeyword;
+		}
+
+		private void appendTo(StringBuilder sb) {
+			sb.append('(').append(mKeyword).append('=');
+			if (mChildren != null) {
+				for (Node child : mChildren) {
+					child.appendTo(sb);
+				}
+			} else {
+				sb.append(mValue);
+			}
+			sb.append(')');
+		}
+	}
+}
@@ -1,13 +1,17 @@
 package com.aleerant.tnssync;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -17,13 +21,8 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.slf4j.LoggerFactory;
 
-import ch.qos.logback.classic.Level;
-import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
-import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.joran.JoranConfigurator;
-import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.ConsoleAppender;
 import ch.qos.logback.core.joran.spi.JoranException;
 import ch.qos.logback.core.util.StatusPrinter;
 
@@ -31,7 +30,32 @@ public class PropertiesHandler implements APPCONSTANT {
 
 	private CommandLineParser mParser = new DefaultParser();
 	private Options mOptions = new Options();
-	private String mTnsAdminPathString, mDefaultAdminContext, mDirectoryServers, mlogbackConfigFile;
+	private static final Pattern GLOB_PATTERN = Pattern.compile("[*?\\[{]");
+
+	private String mTnsAdminPathString, mlogbackConfigFile;
+	private List<Path> mTnsAdminPathList;
+	private LdapOraFile mLdapOraFile;
+	private int mLdapFilterBatchSize = APP_DEFAULT_LDAP_FILTER_BATCH_SIZE;
+	private int mLdapPageSize = APP_DEFAULT_LDAP_PAGE_SIZE;
+	private boolean mDaemonMode;
+	private int mDaemonInterval = APP_DEFAULT_DAEMON_INTERVAL;
+	private int mFleetThreads = APP_DEFAULT_FLEET_THREADS;
+	private boolean mIncremental;
+	private int mFullSyncInterval = APP_DEFAULT_FULL_SYNC_INTERVAL;
+	private int mSnapshotTtl;
+	private int mLockWait;
+	private int mLdapConnectTimeout = APP_DEFAULT_LDAP_CONNECT_TIMEOUT;
+	private int mLdapReadTimeout = APP_DEFAULT_LDAP_READ_TIMEOUT;
+	private int mLdapHedgedConnectCount = 1;
+	private boolean mServerHealth;
+	private int mCircuitCooldown = APP_DEFAULT_CIRCUIT_COOLDOWN;
+	private Path mMetricsFile;
+	private boolean mMetricsJson;
+	private boolean mPatch;
+	private boolean mChangeReport;
+	private int mResolverPort;
+	private boolean mWatch;
+	private int mWatchDebounce = APP_DEFAULT_WATCH_DEBOUNCE;
 
 	public PropertiesHandler(String[] args) throws AppException {
 		initOptions();
@@ -58,6 +82,7 @@ public class PropertiesHandler implements APPCONSTANT {
 					throw new IllegalArgumentException("Missing envinronment variable: TNS_ADMIN");
 				}
 			}
+			mTnsAdminPathList = resolveTnsAdminPathList(mTnsAdminPathString);
 			
 			if (cl.hasOption("l")) {
 				mlogbackConfigFile = cl.getOptionValue("l");
@@ -66,7 +91,82 @@ public class PropertiesHandler implements APPCONSTANT {
 					throw new IllegalArgumentException("Missing logback configuration file: " + mlogbackConfigFile);
 				}
 			} else {
-				mlogbackConfigFile = Paths.get(mTnsAdminPathString, APP_TNSSYNC_LOGBACK_FILENAME).toString();
+				mlogbackConfigFile = Paths.get(getTnsAdminPath().toString(), APP_TNSSYNC_LOGBACK_FILENAME).toString();
+			}
+
+			if (cl.hasOption("fb")) {
+				mLdapFilterBatchSize = parsePositiveInt(cl.getOptionValue("fb"), "ldap_filter_batch_size");
+			}
+
+			if (cl.hasOption("ps")) {
+				mLdapPageSize = parsePositiveInt(cl.getOptionValue("ps"), "ldap_page_size");
+			}
+
+			mDaemonMode = cl.hasOption("d");
+			if (cl.hasOption("i")) {
+				mDaemonInterval = parsePositiveInt(cl.getOptionValue("i"), "interval");
+			}
+
+			if (cl.hasOption("t")) {
+				mFleetThreads = parsePositiveInt(cl.getOptionValue("t"), "threads");
+			}
+
+			mIncremental = cl.hasOption("inc");
+			if (cl.hasOption("fs")) {
+				mFullSyncInterval = parsePositiveInt(cl.getOptionValue("fs"), "full_sync_interval");
+			}
+
+			if (cl.hasOption("st")) {
+				mSnapshotTtl = parsePositiveInt(cl.getOptionValue("st"), "snapshot_ttl");
+			}
+
+			if (cl.hasOption("lw")) {
+				mLockWait = parseNonNegativeInt(cl.getOptionValue("lw"), "lock_wait");
+			}
+
+			if (cl.hasOption("ct")) {
+				mLdapConnectTimeout = parseNonNegativeInt(cl.getOptionValue("ct"), "ldap_connect_timeout");
+			}
+
+			if (cl.hasOption("rt")) {
+				mLdapReadTimeout = parseNonNegativeInt(cl.getOptionValue("rt"), "ldap_read_timeout");
+			}
+
+			if (cl.hasOption("hc")) {
+				mLdapHedgedConnectCount = parsePositiveInt(cl.getOptionValue("hc"), "ldap_hedged_connect");
+			}
+
+			mServerHealth = cl.hasOption("sh");
+			if (cl.hasOption("cc")) {
+				mCircuitCooldown = parsePositiveInt(cl.getOptionValue("cc"), "circuit_cooldown");
+			}
+
+			if (cl.hasOption("mf")) {
+				mMetricsFile = Paths.get(cl.getOptionValue("mf"));
+				if (mMetricsFile.toAbsolutePath().getParent() == null
+						|| !Files.isDirectory(mMetricsFile.toAbsolutePath().getParent())) {
+					System.err.println("Directory of the metrics file not found: " + mMetricsFile.toString());
+					throw new IllegalArgumentException(
+							"Directory of the metrics file not found: " + mMetricsFile.toString());
+				}
+			}
+			mMetricsJson = cl.hasOption("mj");
+			mPatch = cl.hasOption("p");
+			mChangeReport = cl.hasOption("cr");
+			if (cl.hasOption("rp")) {
+				mResolverPort = parsePositiveInt(cl.getOptionValue("rp"), "resolver_port");
+				if (mResolverPort > 65535 || !mDaemonMode) {
+					System.err.println("Resolver port must be at most 65535 and requires daemon mode");
+					throw new IllegalArgumentException("Resolver port must be at most 65535 and requires daemon mode");
+				}
+			}
+			mWatch = cl.hasOption("w");
+			if (cl.hasOption("wd")) {
+				mWatchDebounce = parsePositiveInt(cl.getOptionValue("wd"), "watch_debounce");
+			}
+			if ((mWatch || cl.hasOption("wd")) && !mDaemonMode) {
+				System.err.println("Watching the directories requires daemon mode");
+				throw new IllegalArgumentException("Watching the directories requires daemon mode");
 			}
 
 		} catch (ParseException e) {
@@ -78,7 +178,13 @@ public class PropertiesHandler implements APPCONSTANT {
 
 		selectLoggingConfigFile();
 		validateTnsAdminPath();
-		getLdapOraProperties();
+		if (mResolverPort > 0 && isFleetMode()) {
+			System.err.println("Resolver is not supported in fleet mode");
+			throw new IllegalArgumentException("Resolver is not supported in fleet mode");
+		}
+		if (!isFleetMode()) {
+			mLdapOraFile = new LdapOraFile(getTnsAdminPath());
+		}
 	}
 
 	private void initOptions() {
@@ -87,76 +193,247 @@ public class PropertiesHandler implements APPCONSTANT {
 				.build();
 		Option tnsAdminPathOption = Option.builder("ta").longOpt("tns_admin_dir").argName("DIR").hasArg()
 				.desc("Specifies a directory where the SQL*Net configuration files (like sqlnet.ora, ldap.ora and tnsnames.ora) are located."
-						+ " Configuration file for this program (" + APP_TNSSYNC_FILENAME + ") is also found here.")
+						+ " Configuration file for this program (" + APP_TNSSYNC_FILENAME + ") is also found here."
+						+ " More directories can be given as a comma separated list or with glob patterns (fleet mode).")
 				.build();
 		Option logbackConfFilePath = Option.builder("l").longOpt("logback_config_file").argName("FILE").hasArg()
 				.desc("Logback configuration file (default file: TNS_ADMIN_DIR/" + APP_TNSSYNC_LOGBACK_FILENAME + ")")
 				.build();
+		Option ldapFilterBatchSize = Option.builder("fb").longOpt("ldap_filter_batch_size").argName("N").hasArg()
+				.desc("Maximum number of net service names queried in one LDAP search filter (default: "
+						+ APP_DEFAULT_LDAP_FILTER_BATCH_SIZE + ")")
+				.build();
+		Option ldapPageSize = Option.builder("ps").longOpt("ldap_page_size").argName("N").hasArg()
+				.desc("Number of search results requested in one page from the LDAP server (default: "
+						+ APP_DEFAULT_LDAP_PAGE_SIZE + ")")
+				.build();
+		Option daemonOption = Option.builder("d").longOpt("daemon")
+				.desc("Keep running and synchronize periodically, reusing the configuration and the LDAP connection")
+				.build();
+		Option intervalOption = Option.builder("i").longOpt("interval").argName("SECONDS").hasArg()
+				.desc("Seconds between two synchronizations in daemon mode (default: " + APP_DEFAULT_DAEMON_INTERVAL
+						+ ")")
+				.build();
+		Option threadsOption = Option.builder("t").longOpt("threads").argName("N").hasArg()
+				.desc("Maximum number of TNS_ADMIN directories written in parallel in fleet mode (default: "
+						+ APP_DEFAULT_FLEET_THREADS + ")")
+				.build();
+		Option incrementalOption = Option.builder("inc").longOpt("incremental")
+				.desc("Query only the net services modified since the previous run (modifyTimestamp), the state is kept in "
+						+ APP_SNAPSHOT_FILENAME + " file")
+				.build();
+		Option fullSyncIntervalOption = Option.builder("fs").longOpt("full_sync_interval").argName("SECONDS")
+				.hasArg()
+				.desc("Seconds after a full query is run again in incremental mode to notice deleted entries (default: "
+						+ APP_DEFAULT_FULL_SYNC_INTERVAL + ")")
+				.build();
+		Option snapshotTtlOption = Option.builder("st").longOpt("snapshot_ttl").argName("SECONDS").hasArg()
+				.desc("Keep the result of the LDAP query in " + APP_SNAPSHOT_FILENAME
+						+ " file and skip the query for the given seconds. The snapshot is also used when no LDAP server"
+						+ " is available (also in incremental mode). In fleet mode the snapshot of the directories"
+						+ " using the same directory servers is kept in the first of them.")
+				.build();
+		Option lockWaitOption = Option.builder("lw").longOpt("lock_wait").argName("SECONDS").hasArg()
+				.desc("Seconds to wait for another run synchronizing the same TNS_ADMIN directory (" + APP_LOCK_FILENAME
+						+ " file). The directory is skipped if it is still locked (default: 0, skipped at once).")
+				.build();
+		Option ldapConnectTimeoutOption = Option.builder("ct").longOpt("ldap_connect_timeout").argName("MS").hasArg()
+				.desc("Timeout of connecting to an LDAP server in milliseconds, 0: no timeout (default: "
+						+ APP_DEFAULT_LDAP_CONNECT_TIMEOUT + ")")
+				.build();
+		Option ldapReadTimeoutOption = Option.builder("rt").longOpt("ldap_read_timeout").argName("MS").hasArg()
+				.desc("Timeout of reading a response from the LDAP server in milliseconds, 0: no timeout (default: "
+						+ APP_DEFAULT_LDAP_READ_TIMEOUT + ")")
+				.build();
+		Option ldapHedgedConnectOption = Option.builder("hc").longOpt("ldap_hedged_connect").argName("N").hasArg()
+				.desc("Connect to N servers of DIRECTORY_SERVERS at the same time and use the first connection"
+						+ " established (default: 1, the servers are tried one by one)")
+				.build();
+		Option serverHealthOption = Option.builder("sh").longOpt("server_health")
+				.desc("Keep connection statistics of the LDAP servers in " + APP_SERVER_HEALTH_FILENAME
+						+ " file, try the fastest healthy server first and skip the servers failing repeatedly. In fleet"
+						+ " mode the statistics are kept in the first directory of each group, like the snapshot.")
+				.build();
+		Option circuitCooldownOption = Option.builder("cc").longOpt("circuit_cooldown").argName("SECONDS").hasArg()
+				.desc("Seconds a repeatedly failing LDAP server is skipped for (default: "
+						+ APP_DEFAULT_CIRCUIT_COOLDOWN + ")")
+				.build();
+		Option metricsFileOption = Option.builder("mf").longOpt("metrics_file").argName("FILE").hasArg()
+				.desc("Write the duration of the phases and the results of the synchronization to FILE in Prometheus"
+						+ " text format (e.g. into the directory of the node_exporter textfile collector)")
+				.build();
+		Option metricsJsonOption = Option.builder("mj").longOpt("metrics_json")
+				.desc("Write the metrics file in JSON format instead of Prometheus text format").build();
+		Option patchOption = Option.builder("p").longOpt("patch")
+				.desc("If only descriptors have changed, overwrite the changed entries of " + APP_TNSNAMES_FILENAME
+						+ " in place instead of writing the whole file (faster for large files, but the file is"
+						+ " not replaced atomically)")
+				.build();
+		Option changeReportOption = Option.builder("cr").longOpt("change_report")
+				.desc("Write the added, removed and changed entries of each synchronization to TNS_ADMIN_DIR/"
+						+ APP_CHANGE_REPORT_FILENAME)
+				.build();
+		Option resolverPortOption = Option.builder("rp").longOpt("resolver_port").argName("PORT").hasArg()
+				.desc("Daemon mode: serve the generated entries over HTTP on the loopback interface (GET "
+						+ APP_RESOLVER_PATH + "/NAME, " + APP_RESOLVER_PATH + ", " + APP_RESOLVER_PATH
+						+ "?names=A,B with ETag)")
+				.build();
+		Option watchOption = Option.builder("w").longOpt("watch")
+				.desc("Daemon mode: watch the TNS_ADMIN directories and synchronize a directory right after its "
+						+ APP_TNSSYNC_FILENAME + ", " + APP_TNSSYNC_FRAGMENT_DIRNAME + " or " + APP_LDAPORA_FILENAME
+						+ " has changed (the periodic synchronization is kept)")
+				.build();
+		Option watchDebounceOption = Option.builder("wd").longOpt("watch_debounce").argName("MS").hasArg()
+				.desc("Milliseconds a watched directory must be unchanged before it is synchronized, the changes"
+						+ " within this time are synchronized together (default: " + APP_DEFAULT_WATCH_DEBOUNCE + ")")
+				.build();
 		mOptions.addOption(helpOption);
 		mOptions.addOption(versionOption);
 		mOptions.addOption(tnsAdminPathOption);
 		mOptions.addOption(logbackConfFilePath);
+		mOptions.addOption(ldapFilterBatchSize);
+		mOptions.addOption(ldapPageSize);
+		mOptions.addOption(daemonOption);
+		mOptions.addOption(intervalOption);
+		mOptions.addOption(threadsOption);
+		mOptions.addOption(incrementalOption);
+		mOptions.addOption(fullSyncIntervalOption);
+		mOptions.addOption(snapshotTtlOption);
+		mOptions.addOption(lockWaitOption);
+		mOptions.addOption(ldapConnectTimeoutOption);
+		mOptions.addOption(ldapReadTimeoutOption);
+		mOptions.addOption(ldapHedgedConnectOption);
+		mOptions.addOption(serverHealthOption);
+		mOptions.addOption(circuitCooldownOption);
+		mOptions.addOption(metricsFileOption);
+		mOptions.addOption(metricsJsonOption);
+		mOptions.addOption(patchOption);
+		mOptions.addOption(changeReportOption);
+		mOptions.addOption(resolverPortOption);
+		mOptions.addOption(watchOption);
+		mOptions.addOption(watchDebounceOption);
+	}
+
+	private int parsePositiveInt(String value, String optionName) {
+		return parseInt(value, optionName, 1);
+	}
+
+	// for the options where 0 switches off a wait or a timeout
+	private int parseNonNegativeInt(String value, String optionName) {
+		return parseInt(value, optionName, 0);
+	}
+
+	private int parseInt(String value, String optionName, int min) {
+		try {
+			int result = Integer.parseInt(value.trim());
+			if (result >= min) {
+				return result;
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		System.err.println("Invalid value of parameter " + optionName + ": " + value);
+		throw new IllegalArgumentException("Invalid value of parameter " + optionName + ": " + value);
 	}
 
 	private void validateTnsAdminPath() {
 		if (this.mTnsAdminPathString == null) {
 			throw new IllegalArgumentException("Missing parameter: TNS_ADMIN");
 		}
-		Path p = Paths.get(this.mTnsAdminPathString);
-		if (Files.notExists(p)) {
-			throw new IllegalArgumentException("Directory not found (TNS_ADMIN): " + p.toString());
+		if (this.mTnsAdminPathList.isEmpty()) {
+			throw new IllegalArgumentException("Directory not found (TNS_ADMIN): " + this.mTnsAdminPathString);
+		}
+		for (Path p : this.mTnsAdminPathList) {
+			if (Files.notExists(p)) {
+				throw new IllegalArgumentException("Directory not found (TNS_ADMIN): " + p.toString());
+			}
 		}
 	}
 
-	private void getLdapOraProperties() throws AppException {
-		String ldaporaFile = Paths.get(mTnsAdminPathString, APP_LDAPORA_FILENAME).toString();
-		Properties ldapOraProperties = new Properties();
-		try {
-			ldapOraProperties.load(new FileInputStream(ldaporaFile));
-		} catch (FileNotFoundException e) {
-			throw new AppException(APP_LDAPORA_FILENAME + " file is missing (" + ldaporaFile + "), error message: "
-					+ e.getMessage() + ", caused by:" + e.getCause());
-		} catch (IOException e) {
-			throw new AppException("can not read " + APP_LDAPORA_FILENAME + " file (" + ldaporaFile
-					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+	/*
+	 * splits the comma separated list of directories and expands the glob
+	 * patterns in them
+	 */
+	private List<Path> resolveTnsAdminPathList(String tnsAdminPathString) {
+		Set<Path> result = new LinkedHashSet<Path>();
+		for (String item : tnsAdminPathString.split(",")) {
+			if (item.trim().isEmpty()) {
+				continue;
+			}
+			if (GLOB_PATTERN.matcher(item).find()) {
+				result.addAll(expandGlob(item.trim()));
+			} else {
+				result.add(Paths.get(item.trim()));
+			}
 		}
+		return new ArrayList<Path>(result);
+	}
 
-		this.mDefaultAdminContext = ldapOraProperties.getProperty("DEFAULT_ADMIN_CONTEXT").replaceAll("[()\\s]", "");
-		if (this.mDefaultAdminContext == null) {
-			throw new IllegalArgumentException("Missing parameter: DEFAULT_ADMIN_CONTEXT");
+	private List<Path> expandGlob(String pathString) {
+		Path path = Paths.get(pathString);
+		List<Path> current = new ArrayList<Path>();
+		current.add(path.getRoot() == null ? Paths.get("") : path.getRoot());
+		for (Path element : path) {
+			String name = element.toString();
+			List<Path> next = new ArrayList<Path>();
+			for (Path base : current) {
+				if (!GLOB_PATTERN.matcher(name).find()) {
+					next.add(base.resolve(name));
+					continue;
+				}
+				Path dir = base.toString().isEmpty() ? Paths.get(".") : base;
+				if (!Files.isDirectory(dir)) {
+					continue;
+				}
+				try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, name)) {
+					for (Path p : ds) {
+						if (Files.isDirectory(p)) {
+							next.add(base.resolve(p.getFileName().toString()));
+						}
+					}
+				} catch (IOException e) {
+					throw new IllegalArgumentException("can not list directory (TNS_ADMIN): " + dir.toString()
+							+ ", error message: " + e.getMessage());
+				}
+			}
+			current = next;
 		}
-		this.mDirectoryServers = ldapOraProperties.getProperty("DIRECTORY_SERVERS", "").replaceAll("[()\\s]", "");
+		Collections.sort(current);
+		return current;
+	}
+
+	/*
+	 * reads ldap.ora again if its modification time has changed, returns true if
+	 * it was read
+	 */
+	public boolean reloadLdapOraPropertiesIfModified() throws AppException {
+		return mLdapOraFile.reloadIfModified();
 	}
 
 	private void selectLoggingConfigFile() {
 		LoggerContext context = (LoggerContext) org.slf4j.LoggerFactory.getILoggerFactory();
 		if (Files.notExists(Paths.get(mlogbackConfigFile))) {
-			PatternLayoutEncoder ple = new PatternLayoutEncoder();
-	        ple.setPattern("%msg%n");
-	        ple.setContext(context);
-	        ple.start();
-	        ConsoleAppender<ILoggingEvent> consoleAppender = new ConsoleAppender<ILoggingEvent>();
-	        consoleAppender.setEncoder(ple);
-	        consoleAppender.setContext(context);
-	        consoleAppender.start();
-	        Logger rootLogger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
-	        rootLogger.getLoggerContext().reset();
-	        rootLogger.addAppender(consoleAppender);
-	        rootLogger.setLevel(Level.INFO);
-	        rootLogger.setAdditive(false);  
+			LogbackConfigurator.configureConsole(context);
 		} else {
-			try {
-				JoranConfigurator configurator = new JoranConfigurator();
-				configurator.setContext(context);
-				context.reset();
-				configurator.doConfigure(mlogbackConfigFile);
-			} catch (JoranException e) {
-				// StatusPrinter will handle this
-			}
-			StatusPrinter.printInCaseOfErrorsOrWarnings(context);
+			configureLoggingFromFile(context);
 		}
 	}
 
+	/*
+	 * Joran is loaded only if there is a logback configuration file
+	 */
+	private void configureLoggingFromFile(LoggerContext context) {
+		try {
+			JoranConfigurator configurator = new JoranConfigurator();
+			configurator.setContext(context);
+			context.reset();
+			configurator.doConfigure(mlogbackConfigFile);
+		} catch (JoranException e) {
+			// StatusPrinter will handle this
+		}
+		StatusPrinter.printInCaseOfErrorsOrWarnings(context);
+	}
+
 	private void printUsageInfo() {
 		final String header = "\n" + APP_NAME + " creates " + APP_TNSNAMES_FILENAME
 				+ " file for services listed in a config file (" + APP_TNSSYNC_FILENAME
@@ -172,7 +449,7 @@ public class PropertiesHandler implements APPCONSTANT {
 		final PrintWriter writer = new PrintWriter(System.out);
 
 		HelpFormatter formatter = new HelpFormatter();
-		formatter.printUsage(writer, width, "java -jar " + APP_NAME + ".jar [-ta <DIR>] [-l <FILE>]");
+		formatter.printUsage(writer, width, "java -jar " + APP_NAME + ".jar [-ta <DIR>] [-l <FILE>] [-fb <N>] [-ps <N>] [-d [-i <SECONDS>]] [-t <N>] [-inc [-fs <SECONDS>]] [-st <SECONDS>] [-lw <SECONDS>] [-ct <MS>] [-rt <MS>] [-hc <N>] [-sh [-cc <SECONDS>]] [-mf <FILE> [-mj]] [-p] [-cr] [-rp <PORT>] [-w [-wd <MS>]]");
 		formatter.printUsage(writer, width, "java -jar " + APP_NAME + ".jar -h");
 		formatter.printUsage(writer, width, "java -jar " + APP_NAME + ".jar -v");
 		formatter.printWrapped(writer, width, header);
@@ -188,14 +465,132 @@ public class PropertiesHandler implements APPCONSTANT {
 	}
 
 	public Path getTnsAdminPath() {
-		return Paths.get(mTnsAdminPathString);
+		return mTnsAdminPathList.get(0);
+	}
+
+	public List<Path> getTnsAdminPathList() {
+		return mTnsAdminPathList;
+	}
+
+	public boolean isFleetMode() {
+		return mTnsAdminPathList.size() > 1;
+	}
+
+	public String getTnsAdminPathString() {
+		return mTnsAdminPathString;
 	}
 
 	public String getDefaultAdminContext() {
-		return mDefaultAdminContext;
+		return mLdapOraFile.getDefaultAdminContext();
+	}
+
+	public LdapOraFile getLdapOraFile() {
+		return mLdapOraFile;
 	}
 
 	public String getDirectoryServers() {
-		return mDirectoryServers;
+		return mLdapOraFile.getDirectoryServers();
+	}
+
+	public int getLdapFilterBatchSize() {
+		return mLdapFilterBatchSize;
+	}
+
+	public int getLdapPageSize() {
+		return mLdapPageSize;
+	}
+
+	public boolean isDaemonMode() {
+		return mDaemonMode;
+	}
+
+	public int getDaemonInterval() {
+		return mDaemonInterval;
+	}
+
+	public int getFleetThreads() {
+		return mFleetThreads;
+	}
+
+	public boolean isIncremental() {
+		return mIncremental;
+	}
+
+	public int getFullSyncInterval() {
+		return mFullSyncInterval;
+	}
+
+	public int getSnapshotTtl() {
+		return mSnapshotTtl;
+	}
+
+	public boolean isSnapshotEnabled() {
+		return mIncremental || mSnapshotTtl > 0;
+	}
+
+	public int getLdapConnectTimeout() {
+		return mLdapConnectTimeout;
+	}
+
+	public int getLdapReadTimeout() {
+		return mLdapReadTimeout;
+	}
+
+	public int getLdapHedgedConnectCount() {
+		return mLdapHedgedConnectCount;
+	}
+
+	public boolean isServerHealthEnabled() {
+		return mServerHealth;
+	}
+
+	public int getCircuitCooldown() {
+		return mCircuitCooldown;
+	}
+
+	public Path getMetricsFile() {
+		return mMetricsFile;
+	}
+
+	public boolean isMetricsJson() {
+		return mMetricsJson;
+	}
+
+	public boolean isPatch() {
+		return mPatch;
+	}
+
+	public boolean isChangeReport() {
+		return mChangeReport;
+	}
+
+	/*
+	 * the settings of the synchronization engine given on the command line
+	 */
+	public TnsSyncConfig createSyncConfig() {
+		TnsSyncConfig config = new TnsSyncConfig();
+		config.setLdapFilterBatchSize(mLdapFilterBatchSize);
+		config.setLdapPageSize(mLdapPageSize);
+		config.setLdapTimeouts(mLdapConnectTimeout, mLdapReadTimeout);
+		config.setLdapHedgedConnectCount(mLdapHedgedConnectCount);
+		config.setIncremental(mIncremental);
+		config.setFullSyncInterval(mFullSyncInterval);
+		config.setSnapshotTtl(mSnapshotTtl);
+		config.setPatch(mPatch);
+		config.setChangeReport(mChangeReport);
+		config.setLockWait(mLockWait);
+		return config;
+	}
+
+	public int getResolverPort() {
+		return mResolverPort;
+	}
+
+	public boolean isWatch() {
+		return mWatch;
+	}
+
+	public int getWatchDebounce() {
+		return mWatchDebounce;
 	}
 }
@@ -0,0 +1,224 @@
+package com.aleerant.tnssync;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Timings and results of the synchronization of one TNS_ADMIN directory. The
+ * time of a phase is accumulated, so a phase may be recorded more times (e.g.
+ * the digest check and the full parse both count as reading tnsnames.ora).
+ * The metrics of a run are written to a node_exporter textfile collector file
+ * (Prometheus text format) or to a JSON file.
+ */
+public class SyncMetrics implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SyncMetrics.class);
+
+	public static final String PHASE_CONFIG = "config";
+	public static final String PHASE_LOCK = "lock";
+	public static final String PHASE_READ_TNSSYNC = "read_tnssync";
+	public static final String PHASE_LDAP_CONNECT = "ldap_connect";
+	public static final String PHASE_LDAP_SEARCH = "ldap_search";
+	public static final String PHASE_READ_TNSNAMES = "read_tnsnames";
+	public static final String PHASE_DIFF = "diff";
+	public static final String PHASE_WRITE = "write";
+	public static final String PHASE_MOVE = "move";
+	private static final String[] PHASES = { PHASE_CONFIG, PHASE_LOCK, PHASE_READ_TNSSYNC, PHASE_LDAP_CONNECT, PHASE_LDAP_SEARCH,
+			PHASE_READ_TNSNAMES, PHASE_DIFF, PHASE_WRITE, PHASE_MOVE };
+
+	// name and help text of the gauges labelled with tns_admin only
+	private static final String[][] GAUGES = {
+			{ "tnssync_ldap_entries", "Number of entries received from the directory server." },
+			{ "tnssync_ldap_missing_entries",
+					"Number of net service names of " + APP_TNSSYNC_FILENAME + " not found in the directory." },
+			{ "tnssync_tnsnames_entries",
+					"Number of entries of the generated section of " + APP_TNSNAMES_FILENAME + "." },
+			{ "tnssync_tnsnames_updated",
+					"1 if " + APP_TNSNAMES_FILENAME + " was changed by the last synchronization." },
+			{ "tnssync_success", "1 if the last synchronization succeeded." },
+			{ "tnssync_skipped", "1 if the last synchronization was skipped, as another run held the lock of the"
+					+ " directory or changed its " + APP_TNSSYNC_FILENAME + " during a fleet sync." },
+			{ "tnssync_last_run_timestamp_seconds", "Start time of the last synchronization." } };
+
+	public static final String SOURCE_LDAP = "ldap";
+	public static final String SOURCE_SNAPSHOT = "snapshot";
+
+	private final String mTnsAdmin;
+	private final long mTimestamp = System.currentTimeMillis();
+	private final Map<String, Long> mPhaseNanos = new LinkedHashMap<String, Long>();
+	private String mServer = "";
+	private String mSource = "";
+	private int mLdapEntries, mMissingEntries, mTnsNamesEntries;
+	private boolean mUpdated, mSuccess, mSkipped;
+
+	public SyncMetrics(Path tnsAdminPath) {
+		mTnsAdmin = tnsAdminPath == null ? "" : tnsAdminPath.toString();
+		for (String phase : PHASES) {
+			mPhaseNanos.put(phase, 0L);
+		}
+	}
+
+	public void addPhase(String phase, long nanos) {
+		mPhaseNanos.put(phase, mPhaseNanos.get(phase) + nanos);
+	}
+
+	/*
+	 * records the time elapsed since start, returns the current time as the
+	 * start of the next phase
+	 */
+	public long endPhase(String phase, long start) {
+		long now = System.nanoTime();
+		addPhase(phase, now - start);
+		return now;
+	}
+
+	/*
+	 * takes over the LDAP query phases and results of a fleet group
+	 */
+	public void setQueryMetrics(SyncMetrics groupMetrics) {
+		addPhase(PHASE_LDAP_CONNECT, groupMetrics.mPhaseNanos.get(PHASE_LDAP_CONNECT));
+		addPhase(PHASE_LDAP_SEARCH, groupMetrics.mPhaseNanos.get(PHASE_LDAP_SEARCH));
+		mServer = groupMetrics.mServer;
+		mSource = groupMetrics.mSource;
+		mLdapEntries = groupMetrics.mLdapEntries;
+	}
+
+	public void setServer(String server) {
+		mServer = server == null ? "" : server;
+	}
+
+	public void setSource(String source) {
+		mSource = source;
+	}
+
+	public String getSource() {
+		return mSource;
+	}
+
+	public void setLdapEntries(int ldapEntries) {
+		mLdapEntries = ldapEntries;
+	}
+
+	public void setMissingEntries(int missingEntries) {
+		mMissingEntries = missingEntries;
+	}
+
+	public void setTnsNamesEntries(int tnsNamesEntries) {
+		mTnsNamesEntries = tnsNamesEntries;
+	}
+
+	public void setUpdated(boolean updated) {
+		mUpdated = updated;
+	}
+
+	public boolean isUpdated() {
+		return mUpdated;
+	}
+
+	public void setSuccess(boolean success) {
+		mSuccess = success;
+	}
+
+	public void setSkipped(boolean skipped) {
+		mSkipped = skipped;
+	}
+
+	public boolean isSkipped() {
+		return mSkipped;
+	}
+
+	/*
+	 * The file is written next to its final place and renamed, so the
+	 * textfile collector never reads a partially written file (it ignores the
+	 * temporary file not ending with .prom).
+	 */
+	public static void write(List<SyncMetrics> metrics, Path file, boolean json) throws AppException {
+		LOGGER.debug("start writing metrics [{}]", file.toString());
+		try {
+			String content = json ? toJson(metrics) : toPrometheus(metrics);
+			Utils.writeFileAtomically(file, content.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new AppException("can not write metrics file (" + file.toString() + "), error message: "
+					+ e.getMessage() + ", caused by:" + e.getCause());
+		}
+		LOGGER.debug("end writing metrics");
+	}
+
+	private static String toPrometheus(List<SyncMetrics> metrics) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# HELP tnssync_phase_duration_seconds Duration of the phases of the last synchronization.\n");
+		sb.append("# TYPE tnssync_phase_duration_seconds gauge\n");
+		for (SyncMetrics m : metrics) {
+			for (Map.Entry<String, Long> phase : m.mPhaseNanos.entrySet()) {
+				sb.append("tnssync_phase_duration_seconds{tns_admin=\"").append(escapeLabel(m.mTnsAdmin))
+						.append("\",phase=\"").append(phase.getKey()).append("\"} ")
+						.append(seconds(phase.getValue())).append('\n');
+			}
+		}
+		for (int i = 0; i < GAUGES.length; i++) {
+			sb.append("# HELP ").append(GAUGES[i][0]).append(' ').append(GAUGES[i][1]).append('\n');
+			sb.append("# TYPE ").append(GAUGES[i][0]).append(" gauge\n");
+			for (SyncMetrics m : metrics) {
+				sb.append(GAUGES[i][0]).append("{tns_admin=\"").append(escapeLabel(m.mTnsAdmin)).append("\"} ")
+						.append(m.getGaugeValues()[i]).append('\n');
+			}
+		}
+		sb.append("# HELP tnssync_ldap_server_info Directory server and data source of the last synchronization.\n");
+		sb.append("# TYPE tnssync_ldap_server_info gauge\n");
+		for (SyncMetrics m : metrics) {
+			sb.append("tnssync_ldap_server_info{tns_admin=\"").append(escapeLabel(m.mTnsAdmin)).append("\",server=\"")
+					.append(escapeLabel(m.mServer)).append("\",source=\"").append(m.mSource).append("\"} 1\n");
+		}
+		return sb.toString();
+	}
+
+	// values in the order of GAUGES
+	private String[] getGaugeValues() {
+		return new String[] { String.valueOf(mLdapEntries), String.valueOf(mMissingEntries),
+				String.valueOf(mTnsNamesEntries), mUpdated ? "1" : "0", mSuccess ? "1" : "0", mSkipped ? "1" : "0",
+				seconds(mTimestamp * 1000000L) };
+	}
+
+	private static String toJson(List<SyncMetrics> metrics) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"directories\":[");
+		for (int i = 0; i < metrics.size(); i++) {
+			SyncMetrics m = metrics.get(i);
+			sb.append(i == 0 ? "\n" : ",\n");
+			sb.append("{\"tns_admin\":\"").append(Utils.escapeJson(m.mTnsAdmin)).append('"');
+			sb.append(",\"timestamp\":").append(m.mTimestamp);
+			sb.append(",\"success\":").append(m.mSuccess);
+			sb.append(",\"updated\":").append(m.mUpdated);
+			sb.append(",\"skipped\":").append(m.mSkipped);
+			sb.append(",\"server\":\"").append(Utils.escapeJson(m.mServer)).append('"');
+			sb.append(",\"source\":\"").append(m.mSource).append('"');
+			sb.append(",\"ldap_entries\":").append(m.mLdapEntries);
+			sb.append(",\"ldap_missing_entries\":").append(m.mMissingEntries);
+			sb.append(",\"tnsnames_entries\":").append(m.mTnsNamesEntries);
+			sb.append(",\"phase_duration_seconds\":{");
+			boolean first = true;
+			for (Map.Entry<String, Long> phase : m.mPhaseNanos.entrySet()) {
+				sb.append(first ? "" : ",").append('"').append(phase.getKey()).append("\":")
+						.append(seconds(phase.getValue()));
+				first = false;
+			}
+			sb.append("}}");
+		}
+		sb.append("\n]}\n");
+		return sb.toString();
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+	}
+
+	private static String escapeLabel(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
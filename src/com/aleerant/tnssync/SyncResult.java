@@ -0,0 +1,88 @@
+package com.aleerant.tnssync;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Outcome of the synchronization of one TNS_ADMIN directory by TnsSyncEngine.
+ * The diff is empty if the digest of the generated section matched, as the
+ * entries were not compared then. A skipped directory (locked by another run)
+ * has no entries and no digest.
+ */
+public class SyncResult {
+	private final Path mTnsAdminPath;
+	private final List<TnsEntry> mEntries;
+	private final String mDigest;
+	private final TnsEntryDiff mDiff;
+	private final boolean mUpdated;
+	private final boolean mPatched;
+	private final boolean mSkipped;
+	private final SyncMetrics mMetrics;
+
+	SyncResult(Path tnsAdminPath, List<TnsEntry> entries, String digest, TnsEntryDiff diff, boolean updated,
+			boolean patched, SyncMetrics metrics) {
+		this(tnsAdminPath, entries, digest, diff, updated, patched, false, metrics);
+	}
+
+	private SyncResult(Path tnsAdminPath, List<TnsEntry> entries, String digest, TnsEntryDiff diff, boolean updated,
+			boolean patched, boolean skipped, SyncMetrics metrics) {
+		mTnsAdminPath = tnsAdminPath;
+		mEntries = Collections.unmodifiableList(entries);
+		mDigest = digest;
+		mDiff = diff;
+		mUpdated = updated;
+		mPatched = patched;
+		mSkipped = skipped;
+		mMetrics = metrics;
+	}
+
+	static SyncResult skipped(Path tnsAdminPath, SyncMetrics metrics) {
+		return new SyncResult(tnsAdminPath, new ArrayList<TnsEntry>(), null, TnsEntryDiff.empty(), false, false,
+				true, metrics);
+	}
+
+	public Path getTnsAdminPath() {
+		return mTnsAdminPath;
+	}
+
+	// the entries of the generated section, in name order
+	public List<TnsEntry> getEntries() {
+		return mEntries;
+	}
+
+	public String getDigest() {
+		return mDigest;
+	}
+
+	public TnsEntryDiff getDiff() {
+		return mDiff;
+	}
+
+	// true if the entries of tnsnames.ora were changed
+	public boolean isUpdated() {
+		return mUpdated;
+	}
+
+	// true if tnsnames.ora was patched in place instead of being replaced
+	public boolean isPatched() {
+		return mPatched;
+	}
+
+	// true if the directory was locked by another run and left unchanged
+	public boolean isSkipped() {
+		return mSkipped;
+	}
+
+	// timings of the phases and the results of the query
+	public SyncMetrics getMetrics() {
+		return mMetrics;
+	}
+
+	@Override
+	public String toString() {
+		return "SyncResult [mTnsAdminPath=" + mTnsAdminPath + ", mEntries=" + mEntries.size() + ", mUpdated="
+				+ mUpdated + ", mPatched=" + mPatched + ", mSkipped=" + mSkipped + ", mDiff=" + mDiff + "]";
+	}
+}
@@ -0,0 +1,138 @@
+package com.aleerant.tnssync;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Exclusive lock of a TNS_ADMIN directory, held while it is synchronized. It
+ * is a FileLock on the tnssync.lock file of the directory, so runs of other
+ * processes (an overlapping cron run, another Oracle home sharing the
+ * directory) and other threads of this process are serialized on the same
+ * directory, while different directories are synchronized independently. The
+ * lock is released when the process ends, so a crashed run does not leave the
+ * directory locked. The lock file itself is kept, deleting it would let two
+ * runs lock two different files.
+ *
+ * The threads of this process are serialized by a semaphore per directory
+ * before the lock file is opened: closing any channel of the file releases
+ * every lock the process holds on it (POSIX record locks), so only the thread
+ * holding the directory may have the file open.
+ */
+public class TnsAdminLock implements AutoCloseable, APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TnsAdminLock.class);
+
+	private static final long RETRY_INTERVAL_MILLIS = 100;
+
+	// the directories (real paths) locked by the threads of this process
+	private static final ConcurrentMap<Path, Semaphore> LOCAL_LOCKS = new ConcurrentHashMap<Path, Semaphore>();
+
+	private final FileChannel mChannel;
+	private final FileLock mLock;
+	private final Path mLockFilePath;
+	private final Semaphore mLocalLock;
+
+	private TnsAdminLock(FileChannel channel, FileLock lock, Path lockFilePath, Semaphore localLock) {
+		mChannel = channel;
+		mLock = lock;
+		mLockFilePath = lockFilePath;
+		mLocalLock = localLock;
+	}
+
+	/*
+	 * Locks the directory, waiting at most timeoutMillis for another run
+	 * holding it (0: no wait). Returns null if the directory is still locked.
+	 */
+	public static TnsAdminLock acquire(Path tnsAdminPath, long timeoutMillis) throws AppException {
+		Path lockFilePath = Paths.get(tnsAdminPath.toString(), APP_LOCK_FILENAME);
+		long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		Semaphore localLock = null;
+		FileChannel channel = null;
+		try {
+			localLock = getLocalLock(tnsAdminPath);
+			if (!localLock.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				localLock = null;
+				return null;
+			}
+			channel = FileChannel.open(lockFilePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			while (true) {
+				FileLock lock = tryLock(channel);
+				if (lock != null) {
+					LOGGER.debug("{} locked", lockFilePath.toString());
+					TnsAdminLock result = new TnsAdminLock(channel, lock, lockFilePath, localLock);
+					channel = null;
+					localLock = null;
+					return result;
+				}
+				if (System.nanoTime() >= deadline) {
+					return null;
+				}
+				Thread.sleep(RETRY_INTERVAL_MILLIS);
+			}
+		} catch (IOException e) {
+			throw new AppException("can not lock " + APP_LOCK_FILENAME + " file (" + lockFilePath.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AppException("interrupted while waiting for " + APP_LOCK_FILENAME + " file ("
+					+ lockFilePath.toString() + ")");
+		} finally {
+			closeQuietly(channel);
+			if (localLock != null) {
+				localLock.release();
+			}
+		}
+	}
+
+	private static Semaphore getLocalLock(Path tnsAdminPath) throws IOException {
+		Path key = tnsAdminPath.toRealPath();
+		Semaphore localLock = LOCAL_LOCKS.get(key);
+		if (localLock == null) {
+			LOCAL_LOCKS.putIfAbsent(key, new Semaphore(1));
+			localLock = LOCAL_LOCKS.get(key);
+		}
+		return localLock;
+	}
+
+	// not expected behind the semaphore, handled as locked anyway
+	private static FileLock tryLock(FileChannel channel) throws IOException {
+		try {
+			return channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			mLock.release();
+		} catch (IOException e) {
+			LOGGER.debug("can not release lock of {}: {}", mLockFilePath.toString(), e.getMessage());
+		}
+		closeQuietly(mChannel);
+		mLocalLock.release();
+		LOGGER.debug("{} unlocked", mLockFilePath.toString());
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LOGGER.debug("can not close lock file: {}", e.getMessage());
+		}
+	}
+}
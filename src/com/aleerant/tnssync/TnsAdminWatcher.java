@@ -0,0 +1,176 @@
+package com.aleerant.tnssync;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Watches the TNS_ADMIN directories (WatchService) for changes of the files
+ * the synchronization depends on: tnssync.ora, ldap.ora and the fragments of
+ * tnssync.d. The files written by the synchronization itself (tnsnames.ora,
+ * the lock, snapshot and report files) are ignored. The events of a directory
+ * are coalesced: the listener is called once the directory has been quiet for
+ * the debounce time, with the directory only, so a burst of saves results in
+ * one synchronization of that directory.
+ */
+public class TnsAdminWatcher implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TnsAdminWatcher.class);
+
+	public interface Listener {
+		public void changed(Path tnsAdminPath);
+	}
+
+	private final WatchService mWatchService;
+	private final long mDebounceNanos;
+	private final Listener mListener;
+	// the watched directories (TNS_ADMIN or its tnssync.d) and their TNS_ADMIN
+	private final Map<WatchKey, Path> mTnsAdminPaths = new HashMap<WatchKey, Path>();
+	private final Map<WatchKey, Boolean> mFragmentDirs = new HashMap<WatchKey, Boolean>();
+	// the end of the debounce time of the changed directories
+	private final Map<Path, Long> mPending = new LinkedHashMap<Path, Long>();
+	private Thread mThread;
+
+	public TnsAdminWatcher(List<Path> tnsAdminPaths, long debounceMillis, Listener listener) throws AppException {
+		mDebounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+		mListener = listener;
+		try {
+			mWatchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException e) {
+			throw new AppException("can not create watch service, error message: " + e.getMessage() + ", caused by:"
+					+ e.getCause());
+		}
+		for (Path tnsAdminPath : tnsAdminPaths) {
+			register(tnsAdminPath, tnsAdminPath, false);
+			Path fragmentDirPath = tnsAdminPath.resolve(APP_TNSSYNC_FRAGMENT_DIRNAME);
+			if (Files.isDirectory(fragmentDirPath)) {
+				register(fragmentDirPath, tnsAdminPath, true);
+			}
+		}
+	}
+
+	private void register(Path dir, Path tnsAdminPath, boolean fragmentDir) throws AppException {
+		try {
+			WatchKey key = dir.register(mWatchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+			mTnsAdminPaths.put(key, tnsAdminPath);
+			mFragmentDirs.put(key, fragmentDir);
+			LOGGER.debug("watching {}", dir.toString());
+		} catch (IOException e) {
+			throw new AppException("can not watch directory (" + dir.toString() + "), error message: "
+					+ e.getMessage() + ", caused by:" + e.getCause());
+		}
+	}
+
+	public void start() {
+		mThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "tnssync-watch");
+		mThread.setDaemon(true);
+		mThread.start();
+	}
+
+	public void stop() {
+		try {
+			mWatchService.close();
+		} catch (IOException e) {
+			LOGGER.debug("can not close watch service: {}", e.getMessage());
+		}
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = mPending.isEmpty() ? mWatchService.take()
+						: mWatchService.poll(Math.max(0, nextDeadline() - System.nanoTime()), TimeUnit.NANOSECONDS);
+				if (key != null) {
+					handleEvents(key);
+				}
+				firePending();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// stopped
+		}
+		LOGGER.debug("watching stopped");
+	}
+
+	private void handleEvents(WatchKey key) {
+		Path tnsAdminPath = mTnsAdminPaths.get(key);
+		boolean fragmentDir = mFragmentDirs.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				markChanged(tnsAdminPath, "events lost");
+				continue;
+			}
+			String fileName = ((Path) event.context()).getFileName().toString();
+			if (fragmentDir ? fileName.endsWith(".ora")
+					: fileName.equals(APP_TNSSYNC_FILENAME) || fileName.equals(APP_LDAPORA_FILENAME)) {
+				markChanged(tnsAdminPath, (fragmentDir ? APP_TNSSYNC_FRAGMENT_DIRNAME + "/" : "") + fileName);
+			} else if (!fragmentDir && fileName.equals(APP_TNSSYNC_FRAGMENT_DIRNAME)) {
+				Path fragmentDirPath = tnsAdminPath.resolve(APP_TNSSYNC_FRAGMENT_DIRNAME);
+				if (event.kind() == ENTRY_CREATE && Files.isDirectory(fragmentDirPath)) {
+					try {
+						register(fragmentDirPath, tnsAdminPath, true);
+					} catch (AppException e) {
+						LOGGER.warn(e.getMessage());
+					}
+				}
+				markChanged(tnsAdminPath, fileName);
+			}
+		}
+		if (!key.reset()) {
+			// the directory is gone, the key of a new tnssync.d is registered on its creation
+			mTnsAdminPaths.remove(key);
+			mFragmentDirs.remove(key);
+		}
+	}
+
+	private void markChanged(Path tnsAdminPath, String fileName) {
+		LOGGER.debug("{} changed [{}]", fileName, tnsAdminPath.toString());
+		mPending.remove(tnsAdminPath);
+		mPending.put(tnsAdminPath, System.nanoTime() + mDebounceNanos);
+	}
+
+	private long nextDeadline() {
+		return mPending.values().iterator().next();
+	}
+
+	// the directories quiet for the debounce time, in the order of their last change
+	private void firePending() {
+		long now = System.nanoTime();
+		Iterator<Map.Entry<Path, Long>> i = mPending.entrySet().iterator();
+		while (i.hasNext()) {
+			Map.Entry<Path, Long> pending = i.next();
+			if (pending.getValue() - now > 0) {
+				break;
+			}
+			i.remove();
+			try {
+				mListener.changed(pending.getKey());
+			} catch (RuntimeException e) {
+				LOGGER.error(Utils.getStackTrace(e));
+			}
+		}
+	}
+}
@@ -1,13 +1,31 @@
 package com.aleerant.tnssync;
 
+/*
+ * A net service name and its descriptor. The descriptor is kept as it was
+ * read (it is written to tnsnames.ora as it is), entries are compared by the
+ * canonical form of the descriptor (see NetDescriptor), so a descriptor saved
+ * again with other whitespace, keyword case or parameter order is not a
+ * change.
+ */
 public class TnsEntry implements Comparable<TnsEntry> {
 
 	private String mNetServiceName;
 	private String mNetDescriptionString;
+	private String mCanonicalNetDescription;
 
 	public TnsEntry(String netServiceName, String netDescriptionString) {
 		mNetServiceName = netServiceName.trim().toUpperCase();
-		mNetDescriptionString = netDescriptionString.trim();
+		mCanonicalNetDescription = NetDescriptor.canonicalize(netDescriptionString);
+		String trimmed = netDescriptionString.trim();
+		// the canonical instance is shared if the descriptor is already canonical
+		mNetDescriptionString = trimmed.equals(mCanonicalNetDescription) ? mCanonicalNetDescription : trimmed;
+	}
+
+	// the entry under another name, the descriptor is not parsed again
+	public TnsEntry(String netServiceName, TnsEntry descriptorEntry) {
+		mNetServiceName = netServiceName.trim().toUpperCase();
+		mNetDescriptionString = descriptorEntry.mNetDescriptionString;
+		mCanonicalNetDescription = descriptorEntry.mCanonicalNetDescription;
 	}
 
 	public String getNetServiceName() {
@@ -18,6 +36,15 @@ public class TnsEntry implements Comparable<TnsEntry> {
 		return mNetDescriptionString;
 	}
 
+	public String getCanonicalNetDescription() {
+		return mCanonicalNetDescription;
+	}
+
+	// true if the descriptors are the same in canonical form
+	public boolean hasSameNetDescription(TnsEntry other) {
+		return mCanonicalNetDescription.equals(other.mCanonicalNetDescription);
+	}
+
 	public String getTnsNamesEntryFormat() {
 		return this.mNetServiceName + " = " + mNetDescriptionString;
 	}
@@ -37,7 +64,7 @@ public class TnsEntry implements Comparable<TnsEntry> {
 		TnsEntry that = (TnsEntry) other;
 
 		return this.mNetServiceName.equals(that.mNetServiceName)
-				&& this.mNetDescriptionString.equals(that.mNetDescriptionString);
+				&& this.mCanonicalNetDescription.equals(that.mCanonicalNetDescription);
 	}
 
 	@Override
@@ -45,7 +72,7 @@ public class TnsEntry implements Comparable<TnsEntry> {
 		int hashCode = 1;
 
 		hashCode = hashCode * 37 + this.mNetServiceName.hashCode();
-		hashCode = hashCode * 37 + this.mNetDescriptionString.hashCode();
+		hashCode = hashCode * 37 + this.mCanonicalNetDescription.hashCode();
 
 		return hashCode;
 	}
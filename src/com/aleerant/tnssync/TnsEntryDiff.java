@@ -0,0 +1,148 @@
+package com.aleerant.tnssync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Differences between the entries built from the LDAP data (target) and the
+ * entries of the generated section of the current tnsnames.ora, computed with
+ * one hash map in O(n). The descriptors are compared in canonical form
+ * (see NetDescriptor). Repeated names of the current file count as removed
+ * entries, as they disappear when the file is written again.
+ */
+public class TnsEntryDiff {
+	private final List<TnsEntry> mAdded = new ArrayList<TnsEntry>();
+	private final List<TnsEntry> mRemoved = new ArrayList<TnsEntry>();
+	private final List<Change> mChanged = new ArrayList<Change>();
+
+	public static TnsEntryDiff compute(List<TnsEntry> target, List<TnsEntry> current) {
+		TnsEntryDiff diff = new TnsEntryDiff();
+		Map<String, TnsEntry> currentMap = new HashMap<String, TnsEntry>(current.size() * 2);
+		for (TnsEntry entry : current) {
+			if (currentMap.put(entry.getNetServiceName(), entry) != null) {
+				diff.mRemoved.add(entry);
+			}
+		}
+
+		for (TnsEntry entry : target) {
+			TnsEntry currentEntry = currentMap.remove(entry.getNetServiceName());
+			if (currentEntry == null) {
+				diff.mAdded.add(entry);
+			} else if (!currentEntry.hasSameNetDescription(entry)) {
+				diff.mChanged.add(new Change(currentEntry, entry));
+			}
+		}
+		diff.mRemoved.addAll(currentMap.values());
+		Collections.sort(diff.mRemoved);
+		return diff;
+	}
+
+	// no differences, the entries were not compared
+	public static TnsEntryDiff empty() {
+		return new TnsEntryDiff();
+	}
+
+	public boolean isEmpty() {
+		return mAdded.isEmpty() && mRemoved.isEmpty() && mChanged.isEmpty();
+	}
+
+	// only descriptors are changed, the names of the section are the same
+	public boolean isChangeOnly() {
+		return mAdded.isEmpty() && mRemoved.isEmpty();
+	}
+
+	public List<TnsEntry> getAdded() {
+		return mAdded;
+	}
+
+	public List<TnsEntry> getRemoved() {
+		return mRemoved;
+	}
+
+	public List<Change> getChanged() {
+		return mChanged;
+	}
+
+	/*
+	 * lines of the human readable report, at most maxLines (the rest is
+	 * summarized in the last line)
+	 */
+	public List<String> getReportLines(int maxLines) {
+		List<String> lines = new ArrayList<String>();
+		for (TnsEntry entry : mAdded) {
+			lines.add("added: " + entry.getTnsNamesEntryFormat());
+		}
+		for (TnsEntry entry : mRemoved) {
+			lines.add("removed: " + entry.getTnsNamesEntryFormat());
+		}
+		for (Change change : mChanged) {
+			lines.add("changed: " + change.getNewEntry().getNetServiceName() + " = "
+					+ change.getOldEntry().getNetDescriptionString() + " -> "
+					+ change.getNewEntry().getNetDescriptionString());
+		}
+		if (lines.size() > maxLines) {
+			int more = lines.size() - maxLines + 1;
+			lines = new ArrayList<String>(lines.subList(0, maxLines - 1));
+			lines.add("... and " + more + " more changes");
+		}
+		return lines;
+	}
+
+	/*
+	 * machine readable report
+	 */
+	public String toJson(String tnsAdmin, long timestamp) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"tns_admin\":\"").append(Utils.escapeJson(tnsAdmin)).append('"');
+		sb.append(",\"timestamp\":").append(timestamp);
+		sb.append(",\n\"added\":[");
+		for (int i = 0; i < mAdded.size(); i++) {
+			appendEntry(sb.append(i == 0 ? "\n" : ",\n"), mAdded.get(i));
+		}
+		sb.append("],\n\"removed\":[");
+		for (int i = 0; i < mRemoved.size(); i++) {
+			appendEntry(sb.append(i == 0 ? "\n" : ",\n"), mRemoved.get(i));
+		}
+		sb.append("],\n\"changed\":[");
+		for (int i = 0; i < mChanged.size(); i++) {
+			Change change = mChanged.get(i);
+			sb.append(i == 0 ? "\n" : ",\n");
+			sb.append("{\"name\":\"").append(Utils.escapeJson(change.getNewEntry().getNetServiceName()))
+					.append("\",\"old\":\"").append(Utils.escapeJson(change.getOldEntry().getNetDescriptionString()))
+					.append("\",\"new\":\"").append(Utils.escapeJson(change.getNewEntry().getNetDescriptionString()))
+					.append("\"}");
+		}
+		sb.append("]}\n");
+		return sb.toString();
+	}
+
+	private static void appendEntry(StringBuilder sb, TnsEntry entry) {
+		sb.append("{\"name\":\"").append(Utils.escapeJson(entry.getNetServiceName())).append("\",\"descriptor\":\"")
+				.append(Utils.escapeJson(entry.getNetDescriptionString())).append("\"}");
+	}
+
+	@Override
+	public String toString() {
+		return mAdded.size() + " added, " + mRemoved.size() + " removed, " + mChanged.size() + " changed";
+	}
+
+	public static class Change {
+		private final TnsEntry mOldEntry, mNewEntry;
+
+		private Change(TnsEntry oldEntry, TnsEntry newEntry) {
+			mOldEntry = oldEntry;
+			mNewEntry = newEntry;
+		}
+
+		public TnsEntry getOldEntry() {
+			return mOldEntry;
+		}
+
+		public TnsEntry getNewEntry() {
+			return mNewEntry;
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package com.aleerant.tnssync;
+
+import java.util.List;
+
+/*
+ * Receives the net service entries of an LDAP search page by page, as soon as
+ * a page arrives from the directory server. If the connection of a reused
+ * LdapContext is lost, the query is repeated, so a handler may receive the
+ * same entries again.
+ */
+public interface TnsEntryPageHandler {
+
+	public void handlePage(List<TnsEntry> page) throws AppException;
+}
@@ -0,0 +1,373 @@
+package com.aleerant.tnssync;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Single pass tnsnames.ora parser. Entries may span more lines (the
+ * parentheses of the descriptor are balanced), several names may share one
+ * descriptor (NAME1, NAME2 = ...), names may be domain qualified, and comment
+ * lines are allowed between and inside the entries. The file is read as
+ * ISO-8859-1, so character positions are byte offsets. Besides the entries the
+ * byte offsets of the manual and of the automatically generated section are
+ * reported.
+ */
+public final class TnsNamesParser implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TnsNamesParser.class);
+
+	// the file is read into the heap in chunks of this size: a mapped file can not
+	// be unmapped, so it could not be replaced while mapped (Windows), and a read
+	// of the whole file at once would need a temporary direct buffer of its size
+	private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+	private static final byte[] AUTO_SECTION_MARK = APP_AUTO_SECTION_MARK.getBytes();
+
+	private final ByteBuffer mBuf;
+	private final int mLength;
+	private int mPos;
+
+	private TnsNamesParser(ByteBuffer buf) {
+		mBuf = buf;
+		mLength = buf.limit();
+	}
+
+	public static Result parse(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("file is too large: " + path.toString());
+			}
+			ByteBuffer buf = ByteBuffer.allocate((int) size);
+			while (buf.position() < buf.capacity()) {
+				buf.limit(Math.min(buf.capacity(), buf.position() + READ_CHUNK_SIZE));
+				if (channel.read(buf) < 0) {
+					break;
+				}
+			}
+			buf.flip();
+			return parse(buf);
+		}
+	}
+
+	public static Result parse(ByteBuffer buf) {
+		return new TnsNamesParser(buf.duplicate()).parse();
+	}
+
+	private Result parse() {
+		Result result = new Result(mLength);
+		List<String> names = new ArrayList<String>();
+		StringBuilder descriptor = new StringBuilder(256);
+
+		while (mPos < mLength) {
+			int lineStart = mPos;
+			skipBlanks();
+			if (mPos >= mLength) {
+				break;
+			}
+			byte c = mBuf.get(mPos);
+			if (isLineEnd(c)) {
+				skipLineEnd();
+				continue;
+			}
+			if (c == '#') {
+				if (result.mAutoSectionStart < 0 && startsWith(mPos, AUTO_SECTION_MARK)) {
+					result.mAutoSectionStart = lineStart;
+					LOGGER.debug("auto-generated section found at offset {}", lineStart);
+				}
+				skipLine();
+				continue;
+			}
+
+			boolean autoSection = result.mAutoSectionStart >= 0;
+			names.clear();
+			descriptor.setLength(0);
+			if (!parseNames(names) || !parseDescriptor(descriptor) || !parseLineRest()) {
+				LOGGER.debug("tnsnames.ora is corrupt at offset {}", lineStart);
+				if (autoSection) {
+					result.mAutoSectionCorrupt = true;
+					result.mCorruptOffset = lineStart;
+					break;
+				}
+				if (result.mCorruptOffset < 0) {
+					result.mCorruptOffset = lineStart;
+				}
+				mPos = lineStart;
+				skipLine();
+				continue;
+			}
+
+			// the names of one descriptor share it, it is parsed once
+			TnsEntry first = new TnsEntry(names.get(0), descriptor.toString());
+			for (int i = 0; i < names.size(); i++) {
+				TnsEntry entry = i == 0 ? first : new TnsEntry(names.get(i), first);
+				result.mEntries.add(new Entry(entry, lineStart, mPos, autoSection));
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * NAME[, NAME ...] =
+	 */
+	private boolean parseNames(List<String> names) {
+		while (true) {
+			skipBlanks();
+			int start = mPos;
+			while (mPos < mLength && isNameChar(mBuf.get(mPos))) {
+				mPos++;
+			}
+			if (mPos == start) {
+				return false;
+			}
+			names.add(substring(start, mPos));
+			skipBlanks();
+			if (mPos >= mLength) {
+				return false;
+			}
+			byte c = mBuf.get(mPos++);
+			if (c == '=') {
+				return true;
+			}
+			if (c != ',') {
+				return false;
+			}
+		}
+	}
+
+	/*
+	 * A parenthesized descriptor, may be continued on more lines, or a simple
+	 * value up to the end of the line. The line breaks and the indentation
+	 * around them are left out of the descriptor.
+	 */
+	private boolean parseDescriptor(StringBuilder descriptor) {
+		skipWhitespaceAndComments();
+		if (mPos >= mLength) {
+			return false;
+		}
+		if (mBuf.get(mPos) != '(') {
+			int start = mPos;
+			while (mPos < mLength && !isLineEnd(mBuf.get(mPos)) && mBuf.get(mPos) != '#') {
+				mPos++;
+			}
+			descriptor.append(substring(start, mPos).trim());
+			return descriptor.length() > 0;
+		}
+
+		int depth = 0;
+		while (mPos < mLength) {
+			byte c = mBuf.get(mPos);
+			if (isLineEnd(c)) {
+				trimTrailingBlanks(descriptor);
+				skipWhitespaceAndComments();
+				continue;
+			}
+			descriptor.append((char) (c & 0xff));
+			mPos++;
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+				if (depth == 0) {
+					return true;
+				}
+				if (depth < 0) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * only blanks or a comment may follow the entry on its last line
+	 */
+	private boolean parseLineRest() {
+		skipBlanks();
+		if (mPos < mLength && mBuf.get(mPos) != '#' && !isLineEnd(mBuf.get(mPos))) {
+			return false;
+		}
+		skipLine();
+		return true;
+	}
+
+	private void skipWhitespaceAndComments() {
+		while (mPos < mLength) {
+			byte c = mBuf.get(mPos);
+			if (c == ' ' || c == '\t' || isLineEnd(c)) {
+				mPos++;
+			} else if (c == '#' && isAtLineStart(mPos)) {
+				skipLine();
+			} else {
+				return;
+			}
+		}
+	}
+
+	private boolean isAtLineStart(int pos) {
+		for (int i = pos - 1; i >= 0; i--) {
+			byte c = mBuf.get(i);
+			if (isLineEnd(c)) {
+				return true;
+			}
+			if (c != ' ' && c != '\t') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void skipBlanks() {
+		while (mPos < mLength && (mBuf.get(mPos) == ' ' || mBuf.get(mPos) == '\t')) {
+			mPos++;
+		}
+	}
+
+	// moves to the start of the next line
+	private void skipLine() {
+		while (mPos < mLength && !isLineEnd(mBuf.get(mPos))) {
+			mPos++;
+		}
+		skipLineEnd();
+	}
+
+	private void skipLineEnd() {
+		if (mPos < mLength && mBuf.get(mPos) == '\r') {
+			mPos++;
+		}
+		if (mPos < mLength && mBuf.get(mPos) == '\n') {
+			mPos++;
+		}
+	}
+
+	private boolean startsWith(int pos, byte[] prefix) {
+		if (pos + prefix.length > mLength) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (mBuf.get(pos + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String substring(int start, int end) {
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++) {
+			chars[i - start] = (char) (mBuf.get(i) & 0xff);
+		}
+		return new String(chars);
+	}
+
+	private static void trimTrailingBlanks(StringBuilder sb) {
+		int length = sb.length();
+		while (length > 0 && (sb.charAt(length - 1) == ' ' || sb.charAt(length - 1) == '\t')) {
+			length--;
+		}
+		sb.setLength(length);
+	}
+
+	private static boolean isLineEnd(byte c) {
+		return c == '\n' || c == '\r';
+	}
+
+	private static boolean isNameChar(byte c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '.'
+				|| c == '-' || c == '$';
+	}
+
+	/*
+	 * an entry of the file with the byte range of its lines
+	 */
+	public static final class Entry {
+		private final TnsEntry mTnsEntry;
+		private final int mStartOffset, mEndOffset;
+		private final boolean mAutoSection;
+
+		private Entry(TnsEntry tnsEntry, int startOffset, int endOffset, boolean autoSection) {
+			mTnsEntry = tnsEntry;
+			mStartOffset = startOffset;
+			mEndOffset = endOffset;
+			mAutoSection = autoSection;
+		}
+
+		public TnsEntry getTnsEntry() {
+			return mTnsEntry;
+		}
+
+		// offset of the first byte of the entry's first line
+		public int getStartOffset() {
+			return mStartOffset;
+		}
+
+		// offset after the line end of the entry's last line
+		public int getEndOffset() {
+			return mEndOffset;
+		}
+
+		public boolean isAutoSection() {
+			return mAutoSection;
+		}
+	}
+
+	public static final class Result {
+		private final int mLength;
+		private final List<Entry> mEntries = new ArrayList<Entry>();
+		private int mAutoSectionStart = -1;
+		private boolean mAutoSectionCorrupt;
+		private int mCorruptOffset = -1;
+
+		private Result(int length) {
+			mLength = length;
+		}
+
+		public List<Entry> getEntries() {
+			return Collections.unmodifiableList(mEntries);
+		}
+
+		public List<TnsEntry> getAutoSectionTnsEntries() {
+			List<TnsEntry> result = new ArrayList<TnsEntry>();
+			for (Entry entry : mEntries) {
+				if (entry.isAutoSection()) {
+					result.add(entry.getTnsEntry());
+				}
+			}
+			return result;
+		}
+
+		public boolean hasAutoSection() {
+			return mAutoSectionStart >= 0;
+		}
+
+		// offset of the line of APP_AUTO_SECTION_MARK, -1 if there is no such line
+		public int getAutoSectionStart() {
+			return mAutoSectionStart;
+		}
+
+		// the manual section is [0, getManualSectionEnd())
+		public int getManualSectionEnd() {
+			return hasAutoSection() ? mAutoSectionStart : mLength;
+		}
+
+		public int getLength() {
+			return mLength;
+		}
+
+		public boolean isAutoSectionCorrupt() {
+			return mAutoSectionCorrupt;
+		}
+
+		// offset of the first line that could not be parsed, -1 if none
+		public int getCorruptOffset() {
+			return mCorruptOffset;
+		}
+	}
+}
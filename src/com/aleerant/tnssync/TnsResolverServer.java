@@ -0,0 +1,198 @@
+package com.aleerant.tnssync;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Loopback HTTP resolver of the generated net service entries, for clients
+ * needing only a name to descriptor lookup. The entries are served from an
+ * immutable snapshot, which is swapped atomically after each synchronization,
+ * so a lookup is one hash map read without locking.
+ *
+ *   GET /tns/NAME        descriptor of NAME, 404 if unknown
+ *   GET /tns             all entries in tnsnames.ora format
+ *   GET /tns?names=A,B   the listed entries in tnsnames.ora format
+ *
+ * Every response carries the ETag of the snapshot (the digest of the
+ * generated section), a request with a matching If-None-Match header is
+ * answered with 304 and no body.
+ */
+public class TnsResolverServer implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TnsResolverServer.class);
+
+	private final HttpServer mServer;
+	private final ExecutorService mExecutor;
+	private final AtomicReference<Snapshot> mSnapshot = new AtomicReference<Snapshot>();
+
+	public TnsResolverServer(int port) throws AppException {
+		LOGGER.debug("start construction of TnsResolverServer class [port={}]", port);
+		try {
+			mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			throw new AppException("can not start resolver on port " + port + ", error message: " + e.getMessage()
+					+ ", caused by:" + e.getCause());
+		}
+		mExecutor = Executors.newFixedThreadPool(APP_DEFAULT_RESOLVER_THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "tnssync-resolver");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		mServer.setExecutor(mExecutor);
+		mServer.createContext(APP_RESOLVER_PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					handleRequest(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		mServer.start();
+		LOGGER.info("resolver listening on http://{}:{}{}", mServer.getAddress().getHostString(),
+				mServer.getAddress().getPort(), APP_RESOLVER_PATH);
+	}
+
+	/*
+	 * replaces the served entries, unless the digest is the same
+	 */
+	public void publish(List<TnsEntry> entries, String digest) {
+		Snapshot current = mSnapshot.get();
+		if (current != null && current.mDigest.equals(digest)) {
+			LOGGER.debug("resolver snapshot is unchanged");
+			return;
+		}
+		mSnapshot.set(new Snapshot(entries, digest));
+		LOGGER.debug("resolver snapshot replaced ({} entries)", entries.size());
+	}
+
+	public void stop() {
+		mServer.stop(0);
+		mExecutor.shutdownNow();
+	}
+
+	private void handleRequest(HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().set("Allow", "GET");
+			send(exchange, 405, "method not allowed\n");
+			return;
+		}
+		Snapshot snapshot = mSnapshot.get();
+		if (snapshot == null) {
+			send(exchange, 503, "not synchronized yet\n");
+			return;
+		}
+
+		exchange.getResponseHeaders().set("ETag", snapshot.mETag);
+		if (matchesETag(exchange.getRequestHeaders().getFirst("If-None-Match"), snapshot.mETag)) {
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+
+		String path = exchange.getRequestURI().getPath();
+		if (path.equals(APP_RESOLVER_PATH) || path.equals(APP_RESOLVER_PATH + "/")) {
+			String names = getQueryParameter(exchange.getRequestURI().getQuery(), "names");
+			send(exchange, 200, names == null ? snapshot.mAll : snapshot.getEntries(names.split(",")));
+			return;
+		}
+		TnsEntry entry = path.startsWith(APP_RESOLVER_PATH + "/")
+				? snapshot.mEntries.get(path.substring(APP_RESOLVER_PATH.length() + 1).toUpperCase()) : null;
+		if (entry == null) {
+			send(exchange, 404, "unknown net service name\n");
+		} else {
+			send(exchange, 200, entry.getNetDescriptionString() + "\n");
+		}
+	}
+
+	private static boolean matchesETag(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*") || candidate.equals(eTag) || candidate.equals("W/" + eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getQueryParameter(String query, String name) {
+		if (query == null) {
+			return null;
+		}
+		for (String parameter : query.split("&")) {
+			if (parameter.startsWith(name + "=")) {
+				return parameter.substring(name.length() + 1);
+			}
+		}
+		return null;
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		if (body.length > 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	/*
+	 * The entries by name and the response of the bulk fetch are built once,
+	 * when the snapshot is published, and never modified afterwards.
+	 */
+	private static class Snapshot {
+		private final Map<String, TnsEntry> mEntries;
+		private final byte[] mAll;
+		private final String mDigest;
+		private final String mETag;
+
+		private Snapshot(List<TnsEntry> entries, String digest) {
+			mEntries = new HashMap<String, TnsEntry>(entries.size() * 2);
+			StringBuilder sb = new StringBuilder(entries.size() * 160);
+			for (TnsEntry entry : entries) {
+				mEntries.put(entry.getNetServiceName(), entry);
+				sb.append(entry.getTnsNamesEntryFormat()).append('\n');
+			}
+			mAll = sb.toString().getBytes(StandardCharsets.UTF_8);
+			mDigest = digest;
+			mETag = "\"" + digest + "\"";
+		}
+
+		private byte[] getEntries(String[] names) {
+			StringBuilder sb = new StringBuilder();
+			for (String name : names) {
+				TnsEntry entry = mEntries.get(name.trim().toUpperCase());
+				if (entry != null) {
+					sb.append(entry.getTnsNamesEntryFormat()).append('\n');
+				}
+			}
+			return sb.toString().getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.aleerant.tnssync;
+
+/*
+ * Settings of TnsSyncEngine, independent of the command line. The defaults
+ * are the same as those of the command line options.
+ */
+public class TnsSyncConfig implements APPCONSTANT {
+	private int mLdapFilterBatchSize = APP_DEFAULT_LDAP_FILTER_BATCH_SIZE;
+	private int mLdapPageSize = APP_DEFAULT_LDAP_PAGE_SIZE;
+	private int mLdapConnectTimeout = APP_DEFAULT_LDAP_CONNECT_TIMEOUT;
+	private int mLdapReadTimeout = APP_DEFAULT_LDAP_READ_TIMEOUT;
+	private int mLdapHedgedConnectCount = 1;
+	private boolean mIncremental;
+	private int mFullSyncInterval = APP_DEFAULT_FULL_SYNC_INTERVAL;
+	private int mSnapshotTtl;
+	private boolean mPatch;
+	private boolean mChangeReport;
+	private int mChangeLogMaxLines = APP_CHANGE_LOG_MAX_LINES;
+	private int mLockWait;
+
+	public int getLdapFilterBatchSize() {
+		return mLdapFilterBatchSize;
+	}
+
+	public void setLdapFilterBatchSize(int ldapFilterBatchSize) {
+		mLdapFilterBatchSize = ldapFilterBatchSize;
+	}
+
+	public int getLdapPageSize() {
+		return mLdapPageSize;
+	}
+
+	public void setLdapPageSize(int ldapPageSize) {
+		mLdapPageSize = ldapPageSize;
+	}
+
+	public int getLdapConnectTimeout() {
+		return mLdapConnectTimeout;
+	}
+
+	public int getLdapReadTimeout() {
+		return mLdapReadTimeout;
+	}
+
+	public void setLdapTimeouts(int connectTimeout, int readTimeout) {
+		mLdapConnectTimeout = connectTimeout;
+		mLdapReadTimeout = readTimeout;
+	}
+
+	public int getLdapHedgedConnectCount() {
+		return mLdapHedgedConnectCount;
+	}
+
+	public void setLdapHedgedConnectCount(int ldapHedgedConnectCount) {
+		mLdapHedgedConnectCount = ldapHedgedConnectCount;
+	}
+
+	public boolean isIncremental() {
+		return mIncremental;
+	}
+
+	public void setIncremental(boolean incremental) {
+		mIncremental = incremental;
+	}
+
+	public int getFullSyncInterval() {
+		return mFullSyncInterval;
+	}
+
+	public void setFullSyncInterval(int fullSyncInterval) {
+		mFullSyncInterval = fullSyncInterval;
+	}
+
+	public int getSnapshotTtl() {
+		return mSnapshotTtl;
+	}
+
+	public void setSnapshotTtl(int snapshotTtl) {
+		mSnapshotTtl = snapshotTtl;
+	}
+
+	public boolean isSnapshotEnabled() {
+		return mIncremental || mSnapshotTtl > 0;
+	}
+
+	public boolean isPatch() {
+		return mPatch;
+	}
+
+	public void setPatch(boolean patch) {
+		mPatch = patch;
+	}
+
+	public boolean isChangeReport() {
+		return mChangeReport;
+	}
+
+	public void setChangeReport(boolean changeReport) {
+		mChangeReport = changeReport;
+	}
+
+	public int getChangeLogMaxLines() {
+		return mChangeLogMaxLines;
+	}
+
+	public void setChangeLogMaxLines(int changeLogMaxLines) {
+		mChangeLogMaxLines = changeLogMaxLines;
+	}
+
+	// seconds to wait for the lock of a directory held by another run, 0: skip at once
+	public int getLockWait() {
+		return mLockWait;
+	}
+
+	public void setLockWait(int lockWait) {
+		mLockWait = lockWait;
+	}
+}
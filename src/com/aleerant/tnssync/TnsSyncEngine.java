@@ -0,0 +1,318 @@
+package com.aleerant.tnssync;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * Synchronization of TNS_ADMIN directories, usable in-process (the command
+ * line tool is built on it too). The engine keeps no state besides its
+ * configuration, the state of a directory is held by its FileTarget and
+ * DirectorySource, so calls for different directories may run concurrently.
+ * Errors are reported by exceptions, the engine never exits the JVM.
+ */
+public class TnsSyncEngine implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TnsSyncEngine.class);
+
+	private final TnsSyncConfig mConfig;
+
+	public TnsSyncEngine(TnsSyncConfig config) {
+		mConfig = config;
+	}
+
+	public TnsSyncConfig getConfig() {
+		return mConfig;
+	}
+
+	/*
+	 * Synchronizes the directory with the directory servers of its ldap.ora,
+	 * the connection is opened for this call and closed at its end.
+	 */
+	public SyncResult sync(Path tnsAdminPath) throws TnsSyncFileMissingException, AppException {
+		LdapOraFile ldapOraFile = new LdapOraFile(tnsAdminPath);
+		LdapHandler ldapHandler = createLdapHandler(ldapOraFile);
+		try {
+			LdapSnapshot snapshot = mConfig.isSnapshotEnabled() ? LdapSnapshot.load(tnsAdminPath) : null;
+			return sync(new AppFileHandler(tnsAdminPath), new LdapDirectorySource(ldapHandler, snapshot, mConfig),
+					new SyncMetrics(tnsAdminPath));
+		} finally {
+			ldapHandler.close();
+		}
+	}
+
+	/*
+	 * reads tnssync.ora of the target, queries the source for its names and
+	 * synchronizes the target with the result. The directory is locked for
+	 * the whole run (its snapshot is written by the source), if another run
+	 * holds the lock longer than the lock wait, the directory is skipped.
+	 */
+	public SyncResult sync(FileTarget fileTarget, DirectorySource directorySource, SyncMetrics metrics)
+			throws TnsSyncFileMissingException, AppException {
+		long start = System.nanoTime();
+		try (TnsAdminLock lock = fileTarget.lock(mConfig.getLockWait() * 1000L)) {
+			start = metrics.endPhase(SyncMetrics.PHASE_LOCK, start);
+			if (lock == null) {
+				return skip(fileTarget, metrics);
+			}
+			List<TnsSyncEntry> tnsSyncList = fileTarget.getTnsSyncList();
+			metrics.endPhase(SyncMetrics.PHASE_READ_TNSSYNC, start);
+			Map<String, TnsEntry> tnsDataFromLdap = directorySource
+					.queryTnsEntryMap(getUniqueNetServiceNameList(tnsSyncList), metrics);
+			return syncLocked(fileTarget, tnsSyncList, tnsDataFromLdap, metrics);
+		}
+	}
+
+	/*
+	 * Synchronizes the directory with the net service data queried beforehand
+	 * (e.g. once for several directories using the same directory server):
+	 * compares the entries built from the data with the current tnsnames.ora
+	 * and writes a new file if they differ. The directory is locked (or
+	 * skipped) as above. tnssync.ora is read again under the lock, as another
+	 * run may have changed it since the query: if it asks for names the query
+	 * did not cover, the directory is skipped.
+	 */
+	public SyncResult sync(FileTarget fileTarget, List<TnsSyncEntry> tnsSyncList,
+			Map<String, TnsEntry> tnsDataFromLdap, SyncMetrics metrics) throws AppException {
+		long start = System.nanoTime();
+		try (TnsAdminLock lock = fileTarget.lock(mConfig.getLockWait() * 1000L)) {
+			start = metrics.endPhase(SyncMetrics.PHASE_LOCK, start);
+			if (lock == null) {
+				return skip(fileTarget, metrics);
+			}
+			List<TnsSyncEntry> tnsSyncListLocked;
+			try {
+				tnsSyncListLocked = fileTarget.getTnsSyncList();
+			} catch (TnsSyncFileMissingException e) {
+				return skipChanged(fileTarget, metrics);
+			}
+			metrics.endPhase(SyncMetrics.PHASE_READ_TNSSYNC, start);
+			if (!new HashSet<String>(getUniqueNetServiceNameList(tnsSyncList))
+					.containsAll(getUniqueNetServiceNameList(tnsSyncListLocked))) {
+				return skipChanged(fileTarget, metrics);
+			}
+			return syncLocked(fileTarget, tnsSyncListLocked, tnsDataFromLdap, metrics);
+		}
+	}
+
+	private static SyncResult skip(FileTarget fileTarget, SyncMetrics metrics) {
+		LOGGER.warn("synchronization skipped, {} is locked by another run [{}]", APP_LOCK_FILENAME,
+				fileTarget.getTnsAdminPath().toString());
+		metrics.setSkipped(true);
+		return SyncResult.skipped(fileTarget.getTnsAdminPath(), metrics);
+	}
+
+	private static SyncResult skipChanged(FileTarget fileTarget, SyncMetrics metrics) {
+		LOGGER.warn("synchronization skipped, {} changed since the query [{}]", APP_TNSSYNC_FILENAME,
+				fileTarget.getTnsAdminPath().toString());
+		metrics.setSkipped(true);
+		return SyncResult.skipped(fileTarget.getTnsAdminPath(), metrics);
+	}
+
+	private SyncResult syncLocked(FileTarget fileTarget, List<TnsSyncEntry> tnsSyncList,
+			Map<String, TnsEntry> tnsDataFromLdap, SyncMetrics metrics) throws AppException {
+		long start = System.nanoTime();
+		List<TnsEntry> tnsEntryListFromLdap = createTnsEntryListForTnsSyncEntries(tnsSyncList, tnsDataFromLdap);
+		Collections.sort(tnsEntryListFromLdap);
+		metrics.setTnsNamesEntries(tnsEntryListFromLdap.size());
+		metrics.setMissingEntries(countMissingEntries(tnsSyncList, tnsDataFromLdap));
+
+		/*
+		 * the digest in the header of the generated section is checked first,
+		 * the current entries are parsed only if it does not match
+		 */
+		String digest = AppFileHandler.computeDigest(tnsEntryListFromLdap);
+		start = metrics.endPhase(SyncMetrics.PHASE_DIFF, start);
+		boolean unchanged = fileTarget.isGeneratedSectionDigest(digest);
+		start = metrics.endPhase(SyncMetrics.PHASE_READ_TNSNAMES, start);
+		if (unchanged) {
+			LOGGER.info("nothing to do");
+			metrics.setSuccess(true);
+			return new SyncResult(fileTarget.getTnsAdminPath(), tnsEntryListFromLdap, digest, TnsEntryDiff.empty(),
+					false, false, metrics);
+		}
+
+		List<TnsEntry> tnsEntryListCurrent = fileTarget.getCurrentTnsEntryList();
+		start = metrics.endPhase(SyncMetrics.PHASE_READ_TNSNAMES, start);
+		boolean corrupt = fileTarget.isCurrentTnsNamesCorrupt();
+		TnsEntryDiff diff = TnsEntryDiff.compute(tnsEntryListFromLdap, tnsEntryListCurrent);
+		boolean changed = corrupt || !diff.isEmpty();
+		start = metrics.endPhase(SyncMetrics.PHASE_DIFF, start);
+		if (!diff.isEmpty()) {
+			LOGGER.info("changes: {}", diff);
+			for (String line : diff.getReportLines(mConfig.getChangeLogMaxLines())) {
+				LOGGER.info(line);
+			}
+			if (mConfig.isChangeReport()) {
+				fileTarget.writeChangeReport(diff);
+			}
+		}
+		metrics.setUpdated(changed);
+
+		if (mConfig.isPatch() && !corrupt
+				&& fileTarget.patchGeneratedSection(tnsEntryListFromLdap, diff)) {
+			metrics.endPhase(SyncMetrics.PHASE_WRITE, start);
+			LOGGER.info("tnsnames.ora patched ({} changed)", diff.getChanged().size());
+			metrics.setSuccess(true);
+			return new SyncResult(fileTarget.getTnsAdminPath(), tnsEntryListFromLdap, digest, diff, true, true,
+					metrics);
+		}
+
+		// if the entries are the same, the digest line is missing or stale
+		fileTarget.writeNetServiceDataToBuildFile(tnsEntryListFromLdap);
+		start = metrics.endPhase(SyncMetrics.PHASE_WRITE, start);
+		fileTarget.moveBuidFileToFinal();
+		metrics.endPhase(SyncMetrics.PHASE_MOVE, start);
+		if (changed) {
+			LOGGER.info("new tnsnames.ora file created (" + (tnsEntryListFromLdap.size() < 2
+					? tnsEntryListFromLdap.size() + " entry" : tnsEntryListFromLdap.size() + " entries")
+					+ ")");
+		} else {
+			LOGGER.info("nothing to do, digest of the auto-generated section updated");
+		}
+		metrics.setSuccess(true);
+		return new SyncResult(fileTarget.getTnsAdminPath(), tnsEntryListFromLdap, digest, diff, changed, false,
+				metrics);
+	}
+
+	/*
+	 * names not found in the directory and patterns matching no entry
+	 */
+	private static int countMissingEntries(List<TnsSyncEntry> tnsSyncList, Map<String, TnsEntry> tnsDataFromLdap) {
+		int missing = 0;
+		Set<String> patterns = new HashSet<String>();
+		for (String netServiceName : getUniqueNetServiceNameList(tnsSyncList)) {
+			if (NamePatternMatcher.isPattern(netServiceName)) {
+				patterns.add(netServiceName);
+			} else if (!tnsDataFromLdap.containsKey(netServiceName)) {
+				missing++;
+			}
+		}
+		if (!patterns.isEmpty()) {
+			NamePatternMatcher matcher = new NamePatternMatcher(patterns);
+			for (String netServiceName : tnsDataFromLdap.keySet()) {
+				patterns.removeAll(matcher.getMatchingPatterns(netServiceName));
+			}
+			missing += patterns.size();
+		}
+		return missing;
+	}
+
+
+	/*
+	 * an LdapHandler with the LDAP settings of the configuration
+	 */
+	public LdapHandler createLdapHandler(String directoryServers, String defaultAdminContext) throws AppException {
+		LdapHandler ldapHandler = new LdapHandler(directoryServers, defaultAdminContext,
+				mConfig.getLdapFilterBatchSize(), mConfig.getLdapPageSize());
+		ldapHandler.setTimeouts(mConfig.getLdapConnectTimeout(), mConfig.getLdapReadTimeout());
+		ldapHandler.setHedgedConnectCount(mConfig.getLdapHedgedConnectCount());
+		return ldapHandler;
+	}
+
+	/*
+	 * an LdapHandler with the directory servers and admin contexts of ldap.ora
+	 */
+	public LdapHandler createLdapHandler(LdapOraFile ldapOraFile) throws AppException {
+		LdapHandler ldapHandler = createLdapHandler(ldapOraFile.getDirectoryServers(),
+				ldapOraFile.getDefaultAdminContext());
+		ldapHandler.setDomainAdminContexts(ldapOraFile.getDomainAdminContexts());
+		return ldapHandler;
+	}
+
+	public static boolean equalLists(List<TnsEntry> one, List<TnsEntry> two) {
+		if (one == null && two == null) {
+			return true;
+		}
+
+		if (one == null || two == null || one.size() != two.size()) {
+			return false;
+		}
+
+		// the lists of the caller are left in their original order
+		List<TnsEntry> sortedOne = new ArrayList<TnsEntry>(one);
+		List<TnsEntry> sortedTwo = new ArrayList<TnsEntry>(two);
+		Collections.sort(sortedOne);
+		Collections.sort(sortedTwo);
+		return sortedOne.equals(sortedTwo);
+	}
+	
+	public static List<String> getUniqueNetServiceNameList(List<TnsSyncEntry> tnsSyncEntries) {
+		LOGGER.debug("start getUniqueNetServiceNameList");
+		Set<String> hs = new HashSet<>();
+
+		for (TnsSyncEntry tnsSyncEntry : tnsSyncEntries) {
+			hs.add(tnsSyncEntry.getNetServiceName());
+		}
+		List<String> resultList = new ArrayList<String>();
+		resultList.addAll(hs);
+		LOGGER.debug("end getUniqueNetServiceNameList, result {}", resultList.toString());
+		return resultList;		
+	}
+	
+	public static List<TnsEntry> createTnsEntryListForTnsSyncEntries(
+			List<TnsSyncEntry> tnsSyncEntries, Map<String, TnsEntry> tnsEntries) {
+		LOGGER.debug("start createTnsEntryListForTnsSyncEntries");
+		Map<String, TnsEntry> resultMap = new TreeMap<String, TnsEntry>();
+		
+		LOGGER.debug("creating ordered Map for tnsSyncEntries");
+		Map<String, TnsSyncEntry> om = new TreeMap<String, TnsSyncEntry>();
+		Map<String, List<TnsSyncEntry>> patternEntries = new HashMap<String, List<TnsSyncEntry>>();
+		for (TnsSyncEntry tnsSyncEntry : tnsSyncEntries) { 
+			if (NamePatternMatcher.isPattern(tnsSyncEntry.getNetServiceName())) {
+				List<TnsSyncEntry> entries = patternEntries.get(tnsSyncEntry.getNetServiceName());
+				if (entries == null) {
+					entries = new ArrayList<TnsSyncEntry>();
+					patternEntries.put(tnsSyncEntry.getNetServiceName(), entries);
+				}
+				entries.add(tnsSyncEntry);
+			} else {
+				om.put(tnsSyncEntry.getEntryName(), tnsSyncEntry);
+			}
+		}
+		LOGGER.debug("Map created, result {}", om.toString());
+
+		/*
+		 * Each net service is matched against all patterns at once, the entry
+		 * names are made from the rename templates. The services are processed in
+		 * name order, so of two services renamed to the same entry name the first
+		 * one is kept, and a name listed explicitly takes precedence over both.
+		 */
+		if (!patternEntries.isEmpty()) {
+			NamePatternMatcher matcher = new NamePatternMatcher(patternEntries.keySet());
+			for (TnsEntry tnsEntry : new TreeMap<String, TnsEntry>(tnsEntries).values()) {
+				for (String pattern : matcher.getMatchingPatterns(tnsEntry.getNetServiceName())) {
+					for (TnsSyncEntry tnsSyncEntry : patternEntries.get(pattern)) {
+						String entryName = matcher.expand(pattern, tnsSyncEntry.getEntryName(),
+								tnsEntry.getNetServiceName());
+						if (!resultMap.containsKey(entryName)) {
+							LOGGER.debug("  netServiveName ({}) matches {}, entry name: {}",
+									tnsEntry.getNetServiceName(), pattern, entryName);
+							resultMap.put(entryName, new TnsEntry(entryName, tnsEntry));
+						}
+					}
+				}
+			}
+		}
+		
+		for (Map.Entry<String, TnsSyncEntry> tnsSyncEntry : om.entrySet()) {
+			LOGGER.debug(" processing tnsSyncEntry: {}", tnsSyncEntry.toString());
+			TnsEntry tnsEntry = tnsEntries.get(tnsSyncEntry.getValue().getNetServiceName());
+			if (tnsEntry != null) {
+				LOGGER.debug("  netServiveName ({}) is found, tnsEntry: {}", tnsSyncEntry.getValue().getNetServiceName(), tnsEntry.toString());
+				resultMap.put(tnsSyncEntry.getValue().getEntryName(), new TnsEntry(tnsSyncEntry.getValue().getEntryName(), tnsEntry));
+			}
+		}
+		List<TnsEntry> resultList = new ArrayList<TnsEntry>(resultMap.values());
+
+		LOGGER.debug("end createTnsEntryListForTnsSyncEntries, result {}", resultList.toString());
+		return resultList;		
+	}
+}
@@ -0,0 +1,246 @@
+package com.aleerant.tnssync;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.LoggerFactory;
+
+/*
+ * The requested net services of a TNS_ADMIN directory: tnssync.ora and the
+ * fragments of the tnssync.d directory (*.ora, in name order), e.g. one per
+ * team. An entry name defined in more files must refer to the same net
+ * service, otherwise the configuration is rejected (within one file the last
+ * definition wins, as before).
+ *
+ * The entries of each file are kept together with its modification time and
+ * size, and a file is parsed again only if they have changed. The list of
+ * fragments is read again only if the modification time of tnssync.d has
+ * changed, so an unchanged configuration costs one stat per file.
+ */
+public class TnsSyncFileSet implements APPCONSTANT {
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TnsSyncFileSet.class);
+
+	// names may contain the wildcards * and ?, the entry name is then a rename template,
+	// and may be domain qualified (NAME.DOMAIN)
+	private static final Pattern PATTERN_SIMPLE = Pattern.compile("^\\s*([\\w*?]+(?:\\.[\\w*?]+)*)\\s*$");
+	private static final Pattern PATTERN_FULL_FORMAT = Pattern
+			.compile("^\\s*([\\w*?]+(?:\\.[\\w*?]+)*)\\s*=\\s*([\\w*?]+(?:\\.[\\w*?]+)*)\\s*$");
+
+	private final Path mTnsSyncFilePath;
+	private final Path mFragmentDirPath;
+	private FileTime mFragmentDirLastModified;
+	private List<Path> mFragmentPaths = Collections.emptyList();
+	private Map<Path, ParsedFile> mParsedFiles = new HashMap<Path, ParsedFile>();
+	private List<TnsSyncEntry> mTnsSyncList;
+
+	public TnsSyncFileSet(Path tnsAdminPath) {
+		mTnsSyncFilePath = Paths.get(tnsAdminPath.toString(), APP_TNSSYNC_FILENAME);
+		mFragmentDirPath = Paths.get(tnsAdminPath.toString(), APP_TNSSYNC_FRAGMENT_DIRNAME);
+	}
+
+	public Path getTnsSyncFilePath() {
+		return mTnsSyncFilePath;
+	}
+
+	public List<TnsSyncEntry> getTnsSyncList() throws TnsSyncFileMissingException, AppException {
+		boolean changed = mTnsSyncList == null;
+		List<Path> paths = new ArrayList<Path>();
+		paths.add(mTnsSyncFilePath);
+		paths.addAll(getFragmentPaths());
+
+		Map<Path, ParsedFile> parsedFiles = new HashMap<Path, ParsedFile>();
+		for (Path path : paths) {
+			BasicFileAttributes attributes = readAttributes(path);
+			if (attributes == null) {
+				changed |= mParsedFiles.containsKey(path);
+				continue;
+			}
+			ParsedFile parsedFile = mParsedFiles.get(path);
+			if (parsedFile == null || !parsedFile.isCurrent(attributes)) {
+				parsedFile = new ParsedFile(attributes, parse(path));
+				changed = true;
+			}
+			parsedFiles.put(path, parsedFile);
+		}
+		changed |= parsedFiles.size() != mParsedFiles.size();
+
+		if (parsedFiles.isEmpty()) {
+			mParsedFiles = parsedFiles;
+			mTnsSyncList = null;
+			throw new TnsSyncFileMissingException();
+		}
+		if (changed) {
+			mTnsSyncList = merge(paths, parsedFiles);
+		} else {
+			LOGGER.debug("{} and {} are unchanged, using previously read entries", APP_TNSSYNC_FILENAME,
+					APP_TNSSYNC_FRAGMENT_DIRNAME);
+		}
+		mParsedFiles = parsedFiles;
+		return new ArrayList<TnsSyncEntry>(mTnsSyncList);
+	}
+
+	/*
+	 * the *.ora files of tnssync.d in name order, listed again only if the
+	 * directory has changed
+	 */
+	private List<Path> getFragmentPaths() throws AppException {
+		BasicFileAttributes attributes = readAttributes(mFragmentDirPath);
+		if (attributes == null || !attributes.isDirectory()) {
+			mFragmentDirLastModified = null;
+			mFragmentPaths = Collections.emptyList();
+			return mFragmentPaths;
+		}
+		if (attributes.lastModifiedTime().equals(mFragmentDirLastModified)) {
+			return mFragmentPaths;
+		}
+
+		List<Path> fragmentPaths = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(mFragmentDirPath, "*.ora")) {
+			for (Path path : stream) {
+				fragmentPaths.add(path);
+			}
+		} catch (IOException e) {
+			throw new AppException("can not read " + APP_TNSSYNC_FRAGMENT_DIRNAME + " directory ("
+					+ mFragmentDirPath.toString() + "), error message: " + e.getMessage() + ", caused by:"
+					+ e.getCause());
+		}
+		Collections.sort(fragmentPaths);
+		LOGGER.debug("{} fragment(s) found in {}", fragmentPaths.size(), mFragmentDirPath.toString());
+		mFragmentDirLastModified = attributes.lastModifiedTime();
+		mFragmentPaths = fragmentPaths;
+		return mFragmentPaths;
+	}
+
+	/*
+	 * the entries of all files in file order, an entry defined again with the
+	 * same net service in another file is left out
+	 */
+	private List<TnsSyncEntry> merge(List<Path> paths, Map<Path, ParsedFile> parsedFiles) throws AppException {
+		List<TnsSyncEntry> result = new ArrayList<TnsSyncEntry>();
+		Map<String, TnsSyncEntry> definitions = new HashMap<String, TnsSyncEntry>();
+		Map<String, Path> definitionPaths = new HashMap<String, Path>();
+		for (Path path : paths) {
+			ParsedFile parsedFile = parsedFiles.get(path);
+			if (parsedFile == null) {
+				continue;
+			}
+			for (TnsSyncEntry entry : parsedFile.mEntries) {
+				TnsSyncEntry definition = definitions.get(entry.getEntryName());
+				Path definitionPath = definitionPaths.get(entry.getEntryName());
+				if (definition != null && !definitionPath.equals(path)) {
+					if (!definition.getNetServiceName().equals(entry.getNetServiceName())) {
+						throw new AppException("conflicting definitions of entry " + entry.getEntryName() + ": "
+								+ definition.getTnsSyncEntryFormat() + " (" + getDisplayName(definitionPath) + "), "
+								+ entry.getTnsSyncEntryFormat() + " (" + getDisplayName(path) + ")");
+					}
+					LOGGER.debug("{} is defined in {} too", entry.getTnsSyncEntryFormat(), getDisplayName(path));
+					continue;
+				}
+				definitions.put(entry.getEntryName(), entry);
+				definitionPaths.put(entry.getEntryName(), path);
+				result.add(entry);
+			}
+		}
+		LOGGER.debug("end getTnsSyncList, result {}", result.toString());
+		return result;
+	}
+
+	private List<TnsSyncEntry> parse(Path path) throws AppException {
+		LOGGER.debug("start parsing {} [{}]", getDisplayName(path), path.toString());
+		List<TnsSyncEntry> resultEntries = new ArrayList<TnsSyncEntry>();
+		Matcher matcherSimple = PATTERN_SIMPLE.matcher("");
+		Matcher matcherFullFormat = PATTERN_FULL_FORMAT.matcher("");
+
+		try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+			for (String line; (line = br.readLine()) != null;) {
+				LOGGER.trace("read line [{}]", line);
+				if (line.trim().startsWith("#") || line.trim().isEmpty()) {
+					continue;
+				}
+
+				matcherSimple.reset(line);
+				if (matcherSimple.find()) {
+					TnsSyncEntry entry = new TnsSyncEntry(matcherSimple.group(1), matcherSimple.group(1));
+					resultEntries.add(entry);
+					LOGGER.debug("found {}", entry.toString());
+					continue;
+				}
+
+				matcherFullFormat.reset(line);
+				if (matcherFullFormat.find() && isValidTemplate(matcherFullFormat.group(1), matcherFullFormat.group(2))) {
+					TnsSyncEntry entry = new TnsSyncEntry(matcherFullFormat.group(1), matcherFullFormat.group(2));
+					resultEntries.add(entry);
+					LOGGER.debug("found {}", entry.toString());
+					continue;
+				}
+
+				LOGGER.debug("{} file is corrupt, line: \"{}\"", getDisplayName(path), line);
+				throw new AppException(getDisplayName(path) + " file is corrupt, line: \"" + line + "\"");
+			}
+		} catch (IOException e) {
+			throw new AppException("can not read " + getDisplayName(path) + " file (" + path.toString()
+					+ "), error message: " + e.getMessage() + ", caused by:" + e.getCause());
+		}
+		return resultEntries;
+	}
+
+	/*
+	 * the template of a pattern has the same number of wildcards as the pattern
+	 * (each is replaced by the matched part of the name), a name has none
+	 */
+	private static boolean isValidTemplate(String template, String netServiceName) {
+		return NamePatternMatcher.countWildcards(template) == NamePatternMatcher.countWildcards(netServiceName);
+	}
+
+	// null if the file does not exist
+	private static BasicFileAttributes readAttributes(Path path) throws AppException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new AppException("can not read " + path.toString() + ", error message: " + e.getMessage()
+					+ ", caused by:" + e.getCause());
+		}
+	}
+
+	private String getDisplayName(Path path) {
+		return path.equals(mTnsSyncFilePath) ? APP_TNSSYNC_FILENAME
+				: APP_TNSSYNC_FRAGMENT_DIRNAME + "/" + path.getFileName().toString();
+	}
+
+	/*
+	 * the entries of a file and the modification time and size they were
+	 * read at
+	 */
+	private static class ParsedFile {
+		private final FileTime mLastModified;
+		private final long mSize;
+		private final List<TnsSyncEntry> mEntries;
+
+		private ParsedFile(BasicFileAttributes attributes, List<TnsSyncEntry> entries) {
+			mLastModified = attributes.lastModifiedTime();
+			mSize = attributes.size();
+			mEntries = entries;
+		}
+
+		private boolean isCurrent(BasicFileAttributes attributes) {
+			return mLastModified.equals(attributes.lastModifiedTime()) && mSize == attributes.size();
+		}
+	}
+}
@@ -16,13 +16,23 @@
 
 package com.aleerant.tnssync;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -34,6 +44,23 @@ public class TnsSyncFromLdap implements APPCONSTANT {
 	private static LdapHandler mLdapHandler;
 	private static AppFileHandler mFileHandler;
 	private static PropertiesHandler mPropertiesHandler;
+	private static LdapSnapshot mSnapshot;
+	private static LdapServerHealth mServerHealth;
+
+	// fleet mode: state kept per TNS_ADMIN directory and per directory server group
+	private static Map<Path, AppFileHandler> mFleetFileHandlers = new HashMap<Path, AppFileHandler>();
+	private static Map<Path, LdapOraFile> mFleetLdapOraFiles = new HashMap<Path, LdapOraFile>();
+	private static Map<String, LdapHandler> mFleetLdapHandlers = new HashMap<String, LdapHandler>();
+	private static Map<String, LdapSnapshot> mFleetSnapshots = new HashMap<String, LdapSnapshot>();
+	// fleet mode: the number of queries sent to the directory servers in the current run
+	private static int mFleetLdapQueries;
+	private static ExecutorService mFleetExecutor;
+	private static long mConfigNanos;
+	private static TnsResolverServer mResolver;
+	private static TnsAdminWatcher mWatcher;
+	// fleet mode: the metrics of the last synchronization of each directory
+	private static Map<Path, SyncMetrics> mFleetMetrics = new LinkedHashMap<Path, SyncMetrics>();
+	private static TnsSyncEngine mEngine;
 
 	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TnsSyncFromLdap.class);
 
@@ -42,34 +69,34 @@ public class TnsSyncFromLdap implements APPCONSTANT {
 		root.setLevel(Level.OFF);
 
 		try {
+			long configStart = System.nanoTime();
 			mPropertiesHandler = new PropertiesHandler(args);
-			MDC.put("tnsadmin", mPropertiesHandler.getTnsAdminPath().toString());
+			mEngine = new TnsSyncEngine(mPropertiesHandler.createSyncConfig());
+			mConfigNanos = System.nanoTime() - configStart;
+			MDC.put("tnsadmin", mPropertiesHandler.getTnsAdminPathString());
 			LOGGER.info(String.format("start (%s-%s)", APP_NAME, APP_VERSION));
-			mFileHandler = new AppFileHandler(mPropertiesHandler.getTnsAdminPath());
-			mLdapHandler = new LdapHandler(mPropertiesHandler.getDirectoryServers(),
-					mPropertiesHandler.getDefaultAdminContext());
+			if (!mPropertiesHandler.isFleetMode()) {
+				mFileHandler = new AppFileHandler(mPropertiesHandler.getTnsAdminPath());
+				mLdapHandler = createLdapHandler(mPropertiesHandler.getLdapOraFile());
+			}
 
-			try {
-				List<TnsSyncEntry> tnsSyncList = mFileHandler.getTnsSyncList();
-				Map<String, TnsEntry> tnsDataFromLdap = mLdapHandler.queryTnsEntryMap(getUniqueNetServiceNameList(tnsSyncList));
-				List<TnsEntry> tnsEntryListFromLdap = createTnsEntryListForTnsSyncEntries(tnsSyncList, tnsDataFromLdap);
-				List<TnsEntry> tnsEntryListCurrent = mFileHandler.getCurrentTnsEntryList();
-
-				if (mFileHandler.isCurrentTnsNamesCorrupt()
-						|| !equalLists(tnsEntryListFromLdap, tnsEntryListCurrent)) {
-					mFileHandler.writeNetServiceDataToBuildFile(tnsEntryListFromLdap);
-					mFileHandler.moveBuidFileToFinal();
-					LOGGER.info("new tnsnames.ora file created (" + (tnsEntryListFromLdap.size() < 2
-							? tnsEntryListFromLdap.size() + " entry" : tnsEntryListFromLdap.size() + " entries")
-							+ ")");
-				} else {
-					LOGGER.info("nothing to do");
+			if (mPropertiesHandler.isDaemonMode()) {
+				if (mPropertiesHandler.getResolverPort() > 0) {
+					mResolver = new TnsResolverServer(mPropertiesHandler.getResolverPort());
 				}
-
-			} catch (TnsSyncFileMissingException e) {
-				LOGGER.warn("{} file is missing [{}]", APP_TNSSYNC_FILENAME, mFileHandler.getTnsSyncFilePath().toString());
+				runDaemon();
+			} else {
+				try {
+					if (mPropertiesHandler.isFleetMode()) {
+						runFleetSync();
+					} else {
+						runSync();
+					}
+				} finally {
+					shutdownFleet();
+				}
+				LOGGER.info("finished");
 			}
-			LOGGER.info("finished");
 
 		} catch (AppException e) {
 			// e.printStackTrace();
@@ -83,51 +110,390 @@ public class TnsSyncFromLdap implements APPCONSTANT {
 
 	}
 
-	public static boolean equalLists(List<TnsEntry> one, List<TnsEntry> two) {
-		if (one == null && two == null) {
-			return true;
+	private static LdapHandler createLdapHandler(LdapOraFile ldapOraFile) throws AppException {
+		if (mPropertiesHandler.isServerHealthEnabled() && mServerHealth == null) {
+			mServerHealth = LdapServerHealth.load(mPropertiesHandler.getTnsAdminPath(),
+					mPropertiesHandler.getCircuitCooldown() * 1000L);
+		}
+		return createLdapHandler(ldapOraFile, mServerHealth);
+	}
+
+	private static LdapHandler createLdapHandler(LdapOraFile ldapOraFile, LdapServerHealth serverHealth)
+			throws AppException {
+		LdapHandler ldapHandler = mEngine.createLdapHandler(ldapOraFile);
+		if (serverHealth != null) {
+			ldapHandler.setServerHealth(serverHealth);
+		}
+		return ldapHandler;
+	}
+
+	private static void runSync() throws AppException {
+		SyncMetrics metrics = createSyncMetrics(mPropertiesHandler.getTnsAdminPath());
+		try {
+			if (mSnapshot == null && mPropertiesHandler.isSnapshotEnabled()) {
+				mSnapshot = LdapSnapshot.load(mPropertiesHandler.getTnsAdminPath());
+			}
+			SyncResult result = mEngine.sync(mFileHandler,
+					new LdapDirectorySource(mLdapHandler, mSnapshot, mEngine.getConfig()), metrics);
+			if (mResolver != null && !result.isSkipped()) {
+				mResolver.publish(result.getEntries(), result.getDigest());
+			}
+
+		} catch (TnsSyncFileMissingException e) {
+			LOGGER.warn("{} file is missing [{}]", APP_TNSSYNC_FILENAME, mFileHandler.getTnsSyncFilePath().toString());
+		} finally {
+			writeMetrics(Collections.singletonList(metrics));
 		}
+	}
 
-		Collections.sort(one);
-		Collections.sort(two);
-		return one.equals(two);
+	/*
+	 * the time of parsing the arguments and the configuration is added to the
+	 * metrics of the first run only
+	 */
+	private static SyncMetrics createSyncMetrics(Path tnsAdminPath) {
+		SyncMetrics metrics = new SyncMetrics(tnsAdminPath);
+		metrics.addPhase(SyncMetrics.PHASE_CONFIG, mConfigNanos);
+		return metrics;
 	}
-	
-	public static List<String> getUniqueNetServiceNameList(List<TnsSyncEntry> tnsSyncEntries) {
-		LOGGER.debug("start getUniqueNetServiceNameList");
-		Set<String> hs = new HashSet<>();
 
-		for (TnsSyncEntry tnsSyncEntry : tnsSyncEntries) {
-			hs.add(tnsSyncEntry.getNetServiceName());
+	private static void writeMetrics(List<SyncMetrics> metrics) {
+		mConfigNanos = 0;
+		if (mPropertiesHandler.getMetricsFile() != null) {
+			try {
+				SyncMetrics.write(metrics, mPropertiesHandler.getMetricsFile(), mPropertiesHandler.isMetricsJson());
+			} catch (AppException e) {
+				LOGGER.warn(e.getMessage());
+			}
 		}
-		List<String> resultList = new ArrayList<String>();
-		resultList.addAll(hs);
-		LOGGER.debug("end getUniqueNetServiceNameList, result {}", resultList.toString());
-		return resultList;		
 	}
-	
-	public static List<TnsEntry> createTnsEntryListForTnsSyncEntries(
-			List<TnsSyncEntry> tnsSyncEntries, Map<String, TnsEntry> tnsEntries) {
-		LOGGER.debug("start createTnsEntryListForTnsSyncEntries");
-		List<TnsEntry> resultList = new ArrayList<TnsEntry>();
-		
-		LOGGER.debug("creating ordered Map for tnsSyncEntries");
-		Map<String, TnsSyncEntry> om = new TreeMap<String, TnsSyncEntry>();
-		for (TnsSyncEntry tnsSyncEntry : tnsSyncEntries) { 
-			om.put(tnsSyncEntry.getEntryName(), tnsSyncEntry);
+
+	private static void runFleetSync() throws AppException {
+		runFleetSync(mPropertiesHandler.getTnsAdminPathList(), true);
+	}
+
+	/*
+	 * Synchronizes all TNS_ADMIN directories of the fleet (or the changed ones
+	 * in watch mode). Directories using the same directory servers and admin
+	 * context are grouped, each group is queried once for the union of its net
+	 * service names, then the tnsnames.ora files of the group are compared and
+	 * written in parallel. The metrics file always has all directories, with
+	 * the metrics of their last synchronization.
+	 */
+	private static void runFleetSync(List<Path> tnsAdminPaths, boolean all) throws AppException {
+		LOGGER.info("fleet sync of {} directories", tnsAdminPaths.size());
+		int failed = 0, updated = 0, skipped = 0;
+		mFleetLdapQueries = 0;
+		Map<Path, SyncMetrics> metrics = new LinkedHashMap<Path, SyncMetrics>();
+		for (Path tnsAdminPath : tnsAdminPaths) {
+			metrics.put(tnsAdminPath, createSyncMetrics(tnsAdminPath));
+		}
+		try {
+			failed = syncFleetGroups(tnsAdminPaths, metrics, all);
+		} finally {
+			mFleetMetrics.putAll(metrics);
+			writeMetrics(new ArrayList<SyncMetrics>(mFleetMetrics.values()));
 		}
-		LOGGER.debug("Map created, result {}", om.toString());
-		
-		for (Map.Entry<String, TnsSyncEntry> tnsSyncEntry : om.entrySet()) {
-			LOGGER.debug(" processing tnsSyncEntry: {}", tnsSyncEntry.toString());
-			TnsEntry tnsEntry = tnsEntries.get(tnsSyncEntry.getValue().getNetServiceName());
-			if (tnsEntry != null) {
-				LOGGER.debug("  netServiveName ({}) is found, tnsEntry: {}", tnsSyncEntry.getValue().getNetServiceName(), tnsEntry.toString());
-				resultList.add(new TnsEntry(tnsSyncEntry.getValue().getEntryName(),tnsEntry.getNetDescriptionString()));
+		for (SyncMetrics directoryMetrics : metrics.values()) {
+			if (directoryMetrics.isUpdated()) {
+				updated++;
+			}
+			if (directoryMetrics.isSkipped()) {
+				skipped++;
+			}
+		}
+
+		LOGGER.info("fleet sync finished ({} directories, {} LDAP queries, {} updated, {} skipped, {} failed)",
+				tnsAdminPaths.size(), mFleetLdapQueries, updated, skipped, failed);
+		if (failed > 0) {
+			throw new AppException("synchronization failed in " + failed + " of " + tnsAdminPaths.size()
+					+ " directories");
+		}
+	}
+
+	/*
+	 * returns the number of failed directories, the LDAP handlers of the groups
+	 * no longer used are closed after a synchronization of all directories.
+	 * The tnssync.ora lists are read before the lock of the directories is
+	 * taken (the query of a group needs all of them), the engine reads them
+	 * again under the lock and skips a directory whose list has names beyond
+	 * the query, it is synchronized in the next run.
+	 */
+	private static int syncFleetGroups(List<Path> tnsAdminPaths, Map<Path, SyncMetrics> metrics, boolean all)
+			throws AppException {
+		int failed = 0;
+		Map<String, List<Path>> groups = new LinkedHashMap<String, List<Path>>();
+		Map<String, LdapOraFile> groupLdapOraFiles = new HashMap<String, LdapOraFile>();
+		for (Path tnsAdminPath : tnsAdminPaths) {
+			try {
+				LdapOraFile ldapOraFile = getFleetLdapOraFile(tnsAdminPath);
+				List<Path> group = groups.get(ldapOraFile.getDirectoryKey());
+				if (group == null) {
+					group = new ArrayList<Path>();
+					groups.put(ldapOraFile.getDirectoryKey(), group);
+					groupLdapOraFiles.put(ldapOraFile.getDirectoryKey(), ldapOraFile);
+				}
+				group.add(tnsAdminPath);
+			} catch (AppException | IllegalArgumentException e) {
+				LOGGER.error("synchronization failed [{}]: {}", tnsAdminPath.toString(), e.getMessage());
+				failed++;
 			}
 		}
+		if (all) {
+			closeUnusedFleetLdapHandlers(groups.keySet());
+		}
+
+		for (Map.Entry<String, List<Path>> group : groups.entrySet()) {
+			Map<Path, List<TnsSyncEntry>> tnsSyncLists = new LinkedHashMap<Path, List<TnsSyncEntry>>();
+			List<TnsSyncEntry> tnsSyncUnion = new ArrayList<TnsSyncEntry>();
+			for (Path tnsAdminPath : group.getValue()) {
+				AppFileHandler fileHandler = getFleetFileHandler(tnsAdminPath);
+				try {
+					long start = System.nanoTime();
+					List<TnsSyncEntry> tnsSyncList = fileHandler.getTnsSyncList();
+					metrics.get(tnsAdminPath).endPhase(SyncMetrics.PHASE_READ_TNSSYNC, start);
+					tnsSyncLists.put(tnsAdminPath, tnsSyncList);
+					tnsSyncUnion.addAll(tnsSyncList);
+				} catch (TnsSyncFileMissingException e) {
+					LOGGER.warn("{} file is missing [{}]", APP_TNSSYNC_FILENAME,
+							fileHandler.getTnsSyncFilePath().toString());
+				} catch (AppException e) {
+					LOGGER.error("synchronization failed [{}]: {}", tnsAdminPath.toString(), e.getMessage());
+					failed++;
+				}
+			}
+
+			final Map<String, TnsEntry> tnsDataFromLdap;
+			SyncMetrics groupMetrics = new SyncMetrics(null);
+			try {
+				LdapSnapshot snapshot = null;
+				if (mPropertiesHandler.isSnapshotEnabled()) {
+					// in fleet mode the snapshot of the group is the snapshot file of its first
+					// directory, kept in memory between daemon cycles
+					snapshot = mFleetSnapshots.get(group.getKey());
+					if (snapshot == null) {
+						snapshot = LdapSnapshot.load(group.getValue().get(0));
+						mFleetSnapshots.put(group.getKey(), snapshot);
+					}
+				}
+				tnsDataFromLdap = new LdapDirectorySource(
+						getFleetLdapHandler(groupLdapOraFiles.get(group.getKey()), group.getValue().get(0)), snapshot, mEngine.getConfig()).queryTnsEntryMap(
+								TnsSyncEngine.getUniqueNetServiceNameList(tnsSyncUnion), groupMetrics);
+			} catch (AppException e) {
+				LOGGER.error("synchronization failed {}: {}", group.getValue().toString(), e.getMessage());
+				failed += tnsSyncLists.size();
+				continue;
+			} finally {
+				for (Path tnsAdminPath : tnsSyncLists.keySet()) {
+					metrics.get(tnsAdminPath).setQueryMetrics(groupMetrics);
+				}
+				// groups answered from the snapshot do not query the directory server
+				if (SyncMetrics.SOURCE_LDAP.equals(groupMetrics.getSource())) {
+					mFleetLdapQueries++;
+				}
+			}
+
+			Map<Path, Future<SyncResult>> results = new LinkedHashMap<Path, Future<SyncResult>>();
+			for (final Map.Entry<Path, List<TnsSyncEntry>> tnsSyncList : tnsSyncLists.entrySet()) {
+				final AppFileHandler fileHandler = getFleetFileHandler(tnsSyncList.getKey());
+				final SyncMetrics directoryMetrics = metrics.get(tnsSyncList.getKey());
+				results.put(tnsSyncList.getKey(), getFleetExecutor().submit(new Callable<SyncResult>() {
+					@Override
+					public SyncResult call() throws AppException {
+						MDC.put("tnsadmin", tnsSyncList.getKey().toString());
+						try {
+							return mEngine.sync(fileHandler, tnsSyncList.getValue(), tnsDataFromLdap,
+									directoryMetrics);
+						} finally {
+							MDC.remove("tnsadmin");
+						}
+					}
+				}));
+			}
 
-		LOGGER.debug("end createTnsEntryListForTnsSyncEntries, result {}", resultList.toString());
-		return resultList;		
+			for (Map.Entry<Path, Future<SyncResult>> result : results.entrySet()) {
+				try {
+					result.getValue().get();
+				} catch (ExecutionException e) {
+					LOGGER.error("synchronization failed [{}]: {}", result.getKey().toString(),
+							e.getCause() instanceof AppException ? e.getCause().getMessage()
+									: Utils.getStackTrace(e.getCause()));
+					failed++;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new AppException("fleet sync interrupted");
+				}
+			}
+		}
+		return failed;
+	}
+
+	private static LdapOraFile getFleetLdapOraFile(Path tnsAdminPath) throws AppException {
+		LdapOraFile ldapOraFile = mFleetLdapOraFiles.get(tnsAdminPath);
+		if (ldapOraFile == null) {
+			ldapOraFile = new LdapOraFile(tnsAdminPath);
+			mFleetLdapOraFiles.put(tnsAdminPath, ldapOraFile);
+		} else {
+			ldapOraFile.reloadIfModified();
+		}
+		return ldapOraFile;
+	}
+
+	private static AppFileHandler getFleetFileHandler(Path tnsAdminPath) {
+		AppFileHandler fileHandler = mFleetFileHandlers.get(tnsAdminPath);
+		if (fileHandler == null) {
+			fileHandler = new AppFileHandler(tnsAdminPath);
+			mFleetFileHandlers.put(tnsAdminPath, fileHandler);
+		}
+		return fileHandler;
+	}
+
+	/*
+	 * in fleet mode the server statistics of a group are kept in the first
+	 * directory of the group, like its snapshot
+	 */
+	private static LdapHandler getFleetLdapHandler(LdapOraFile ldapOraFile, Path firstTnsAdminPath)
+			throws AppException {
+		LdapHandler ldapHandler = mFleetLdapHandlers.get(ldapOraFile.getDirectoryKey());
+		if (ldapHandler == null) {
+			ldapHandler = createLdapHandler(ldapOraFile, mPropertiesHandler.isServerHealthEnabled()
+					? LdapServerHealth.load(firstTnsAdminPath, mPropertiesHandler.getCircuitCooldown() * 1000L)
+					: null);
+			mFleetLdapHandlers.put(ldapOraFile.getDirectoryKey(), ldapHandler);
+		}
+		return ldapHandler;
+	}
+
+	private static void closeUnusedFleetLdapHandlers(Set<String> usedKeys) {
+		Iterator<Map.Entry<String, LdapHandler>> i = mFleetLdapHandlers.entrySet().iterator();
+		while (i.hasNext()) {
+			Map.Entry<String, LdapHandler> ldapHandler = i.next();
+			if (!usedKeys.contains(ldapHandler.getKey())) {
+				ldapHandler.getValue().close();
+				mFleetSnapshots.remove(ldapHandler.getKey());
+				i.remove();
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getFleetExecutor() {
+		if (mFleetExecutor == null) {
+			mFleetExecutor = Executors.newFixedThreadPool(Math.min(mPropertiesHandler.getFleetThreads(),
+					mPropertiesHandler.getTnsAdminPathList().size()));
+		}
+		return mFleetExecutor;
+	}
+
+	private static synchronized void shutdownFleet() {
+		if (mFleetExecutor != null) {
+			mFleetExecutor.shutdownNow();
+			mFleetExecutor = null;
+		}
+		closeUnusedFleetLdapHandlers(Collections.<String> emptySet());
+	}
+
+	/*
+	 * Runs the synchronization periodically in the same process: the logging
+	 * configuration and the parsed files are kept, the LDAP connection is reused
+	 * between the cycles and opened again only after a failure.
+	 */
+	private static void runDaemon() throws InterruptedException {
+		LOGGER.info("running in daemon mode (interval: {} s)", mPropertiesHandler.getDaemonInterval());
+		final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				scheduler.shutdownNow();
+				if (mWatcher != null) {
+					mWatcher.stop();
+				}
+				if (mResolver != null) {
+					mResolver.stop();
+				}
+				if (mLdapHandler != null) {
+					mLdapHandler.close();
+				}
+				shutdownFleet();
+				LOGGER.info("finished");
+			}
+		});
+
+		final String tnsAdmin = mPropertiesHandler.getTnsAdminPathString();
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				MDC.put("tnsadmin", tnsAdmin);
+				runDaemonCycle();
+			}
+		}, 0, mPropertiesHandler.getDaemonInterval(), TimeUnit.SECONDS);
+		if (mPropertiesHandler.isWatch()) {
+			startWatcher(scheduler);
+		}
+		scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Watch mode: a changed directory is synchronized on the scheduler thread
+	 * right after its debounce time, between the periodic cycles (which are
+	 * kept to pick up the changes of the directory servers). A directory
+	 * already waiting for its synchronization is not queued again.
+	 */
+	private static void startWatcher(final ScheduledExecutorService scheduler) {
+		final Set<Path> queued = Collections.synchronizedSet(new HashSet<Path>());
+		try {
+			mWatcher = new TnsAdminWatcher(mPropertiesHandler.getTnsAdminPathList(),
+					mPropertiesHandler.getWatchDebounce(), new TnsAdminWatcher.Listener() {
+						@Override
+						public void changed(final Path tnsAdminPath) {
+							if (!queued.add(tnsAdminPath)) {
+								return;
+							}
+							scheduler.execute(new Runnable() {
+								@Override
+								public void run() {
+									queued.remove(tnsAdminPath);
+									MDC.put("tnsadmin", tnsAdminPath.toString());
+									LOGGER.info("configuration changed, synchronizing [{}]", tnsAdminPath.toString());
+									runDaemonCycle(Collections.singletonList(tnsAdminPath));
+								}
+							});
+						}
+					});
+		} catch (AppException e) {
+			LOGGER.error("{}, watching disabled", e.getMessage());
+			return;
+		}
+		mWatcher.start();
+		LOGGER.info("watching {} directories (debounce: {} ms)", mPropertiesHandler.getTnsAdminPathList().size(),
+				mPropertiesHandler.getWatchDebounce());
+	}
+
+	private static void runDaemonCycle() {
+		runDaemonCycle(null);
+	}
+
+	/*
+	 * synchronizes the given directories of the fleet, or all of them if null
+	 */
+	private static void runDaemonCycle(List<Path> tnsAdminPaths) {
+		try {
+			if (mPropertiesHandler.isFleetMode()) {
+				if (tnsAdminPaths == null) {
+					runFleetSync();
+				} else {
+					runFleetSync(tnsAdminPaths, false);
+				}
+				return;
+			}
+			if (mPropertiesHandler.reloadLdapOraPropertiesIfModified()) {
+				LOGGER.info("{} file is modified, reconnecting", APP_LDAPORA_FILENAME);
+				mLdapHandler.close();
+				mLdapHandler = createLdapHandler(mPropertiesHandler.getLdapOraFile());
+			}
+			runSync();
+		} catch (AppException e) {
+			LOGGER.error(e.getMessage());
+		} catch (Exception e) {
+			LOGGER.error(Utils.getStackTrace(e));
+		}
 	}
 }
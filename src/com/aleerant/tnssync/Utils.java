@@ -1,8 +1,17 @@
 package com.aleerant.tnssync;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
 
 public final class Utils {
 	public static String getStackTrace(Throwable aThrowable) {
@@ -11,4 +20,89 @@ public final class Utils {
 	    aThrowable.printStackTrace(printWriter);
 	    return result.toString();
 	  }
+
+	/*
+	 * escapes special characters of an LDAP search filter value (RFC 4515)
+	 */
+	public static String escapeLdapFilterValue(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				sb.append("\\5c");
+				break;
+			case '*':
+				sb.append("\\2a");
+				break;
+			case '(':
+				sb.append("\\28");
+				break;
+			case ')':
+				sb.append("\\29");
+				break;
+			case '\u0000':
+				sb.append("\\00");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * escapes a value of a JSON string
+	 */
+	public static String escapeJson(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * writes the file next to its final place, forces it to disk and renames
+	 * it, so readers never see a partially written file. The temporary file
+	 * has a unique name, so concurrent writers do not write into each other's
+	 * file.
+	 */
+	public static void writeFileAtomically(Path file, byte[] content) throws IOException {
+		Path tmpFile = getUniqueSibling(file, file.getFileName().toString(), "tmp");
+		try {
+			try (FileChannel out = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE)) {
+				ByteBuffer buf = ByteBuffer.wrap(content);
+				while (buf.hasRemaining()) {
+					out.write(buf);
+				}
+				out.force(true);
+			}
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+
+	/*
+	 * PREFIX.RANDOM.SUFFIX in the directory of the file, for temporary files
+	 * of concurrent runs (created with CREATE_NEW, so a clash is an error
+	 * instead of a shared file)
+	 */
+	public static Path getUniqueSibling(Path file, String prefix, String suffix) {
+		return file.resolveSibling(
+				prefix + "." + Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE) + "." + suffix);
+	}
 }
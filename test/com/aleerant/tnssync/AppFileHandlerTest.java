@@ -0,0 +1,159 @@
+package com.aleerant.tnssync;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AppFileHandlerTest implements APPCONSTANT {
+
+	private static final String MANUAL_SECTION = "# manual entries\nDB0 = (DESCRIPTION=(ADDRESS=(HOST=h0)))\n";
+
+	private static final List<TnsEntry> GENERATED = Arrays.asList(
+			new TnsEntry("DB1", "(DESCRIPTION=(ADDRESS=(HOST=h1)))"),
+			new TnsEntry("DB2", "(DESCRIPTION=(ADDRESS=(HOST=h2)))"),
+			new TnsEntry("DB3", "(DESCRIPTION=(ADDRESS=(HOST=h3)))"),
+			new TnsEntry("DB4", "(DESCRIPTION=(ADDRESS=(HOST=h4)))"));
+
+	// DB1 keeps its length, DB3 changes it, DB2 and DB4 are unchanged
+	private static final List<TnsEntry> CHANGED = Arrays.asList(
+			new TnsEntry("DB1", "(DESCRIPTION=(ADDRESS=(HOST=h9)))"),
+			new TnsEntry("DB2", "(DESCRIPTION=(ADDRESS=(HOST=h2)))"),
+			new TnsEntry("DB3", "(DESCRIPTION=(ADDRESS=(HOST=h3.example.com)(PORT=1522)))"),
+			new TnsEntry("DB4", "(DESCRIPTION=(ADDRESS=(HOST=h4)))"));
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private Path createTnsAdmin(String name, List<TnsEntry> generated) throws IOException, AppException {
+		Path tnsAdminPath = mFolder.newFolder(name).toPath();
+		Files.write(tnsAdminPath.resolve(APP_TNSNAMES_FILENAME), MANUAL_SECTION.getBytes(StandardCharsets.ISO_8859_1));
+		rewrite(tnsAdminPath, generated);
+		return tnsAdminPath;
+	}
+
+	private static void rewrite(Path tnsAdminPath, List<TnsEntry> generated) throws AppException {
+		AppFileHandler handler = new AppFileHandler(tnsAdminPath);
+		handler.getCurrentTnsEntryList();
+		handler.writeNetServiceDataToBuildFile(generated);
+		handler.moveBuidFileToFinal();
+	}
+
+	// the #Modified line holds the time of the write
+	private static String readWithoutModifiedTime(Path tnsAdminPath) throws IOException {
+		return new String(Files.readAllBytes(tnsAdminPath.resolve(APP_TNSNAMES_FILENAME)),
+				StandardCharsets.ISO_8859_1).replaceAll("(?m)^#Modified: .*$", "#Modified: -");
+	}
+
+	@Test
+	public void patchedFileEqualsRewrittenFile() throws IOException, AppException {
+		Path patched = createTnsAdmin("patched", GENERATED);
+		Path rewritten = createTnsAdmin("rewritten", GENERATED);
+
+		AppFileHandler handler = new AppFileHandler(patched);
+		List<TnsEntry> current = handler.getCurrentTnsEntryList();
+		assertEquals(GENERATED, current);
+		TnsEntryDiff diff = TnsEntryDiff.compute(CHANGED, current);
+		assertEquals(2, diff.getChanged().size());
+		assertTrue(handler.patchGeneratedSection(CHANGED, diff));
+
+		rewrite(rewritten, CHANGED);
+
+		String patchedText = readWithoutModifiedTime(patched);
+		assertArrayEquals(readWithoutModifiedTime(rewritten).getBytes(StandardCharsets.ISO_8859_1),
+				patchedText.getBytes(StandardCharsets.ISO_8859_1));
+		assertTrue(patchedText.startsWith(MANUAL_SECTION));
+		assertTrue(new AppFileHandler(patched).isGeneratedSectionDigest(AppFileHandler.computeDigest(CHANGED)));
+	}
+
+	@Test
+	public void replacesSectionOfIndentedMark() throws IOException, AppException {
+		Path tnsAdminPath = mFolder.newFolder("indented").toPath();
+		Path tnsNamesPath = tnsAdminPath.resolve(APP_TNSNAMES_FILENAME);
+		Files.write(tnsNamesPath, (MANUAL_SECTION + " \t" + APP_AUTO_SECTION_MARK + "\nDBX = (DESCRIPTION=(ADDRESS=(HOST=hx)))\n")
+				.getBytes(StandardCharsets.ISO_8859_1));
+
+		rewrite(tnsAdminPath, GENERATED);
+
+		String text = new String(Files.readAllBytes(tnsNamesPath), StandardCharsets.ISO_8859_1);
+		assertTrue(text.startsWith(MANUAL_SECTION + APP_AUTO_SECTION_MARK));
+		assertEquals(text.indexOf(APP_AUTO_SECTION_MARK), text.lastIndexOf(APP_AUTO_SECTION_MARK));
+		assertFalse(text.contains("DBX"));
+		assertEquals(GENERATED, new AppFileHandler(tnsAdminPath).getCurrentTnsEntryList());
+	}
+
+	@Test
+	public void recognizesUnchangedSection() throws IOException, AppException {
+		Path tnsAdminPath = createTnsAdmin("unchanged", GENERATED);
+		AppFileHandler handler = new AppFileHandler(tnsAdminPath);
+		assertTrue(handler.isGeneratedSectionDigest(AppFileHandler.computeDigest(GENERATED)));
+		assertFalse(handler.isGeneratedSectionDigest(AppFileHandler.computeDigest(CHANGED)));
+	}
+
+	@Test
+	public void recognizesSectionEditedWithSameLength() throws IOException, AppException {
+		Path tnsAdminPath = createTnsAdmin("edited", GENERATED);
+		Path tnsNamesPath = tnsAdminPath.resolve(APP_TNSNAMES_FILENAME);
+		String text = new String(Files.readAllBytes(tnsNamesPath), StandardCharsets.ISO_8859_1);
+		Files.write(tnsNamesPath, text.replace("(HOST=h2)", "(HOST=h8)").getBytes(StandardCharsets.ISO_8859_1));
+
+		assertFalse(new AppFileHandler(tnsAdminPath).isGeneratedSectionDigest(AppFileHandler.computeDigest(GENERATED)));
+	}
+
+	@Test
+	public void recognizesUnchangedSectionOfIndentedMark() throws IOException, AppException {
+		Path tnsAdminPath = createTnsAdmin("indentedDigest", GENERATED);
+		Path tnsNamesPath = tnsAdminPath.resolve(APP_TNSNAMES_FILENAME);
+		String text = new String(Files.readAllBytes(tnsNamesPath), StandardCharsets.ISO_8859_1);
+		Files.write(tnsNamesPath, text.replace(APP_AUTO_SECTION_MARK, " \t" + APP_AUTO_SECTION_MARK)
+				.getBytes(StandardCharsets.ISO_8859_1));
+
+		assertTrue(new AppFileHandler(tnsAdminPath).isGeneratedSectionDigest(AppFileHandler.computeDigest(GENERATED)));
+	}
+
+	@Test
+	public void doesNotPatchFileModifiedWithSameSize() throws IOException, AppException {
+		Path tnsAdminPath = createTnsAdmin("modified", GENERATED);
+		Path tnsNamesPath = tnsAdminPath.resolve(APP_TNSNAMES_FILENAME);
+
+		AppFileHandler handler = new AppFileHandler(tnsAdminPath);
+		List<TnsEntry> current = handler.getCurrentTnsEntryList();
+
+		// an edit of the manual section keeping the size of the file
+		byte[] edited = Files.readAllBytes(tnsNamesPath);
+		edited[MANUAL_SECTION.indexOf("h0") + 1] = '8';
+		FileTime lastModified = Files.getLastModifiedTime(tnsNamesPath);
+		Files.write(tnsNamesPath, edited);
+		Files.setLastModifiedTime(tnsNamesPath, FileTime.fromMillis(lastModified.toMillis() + 2000));
+
+		assertFalse(handler.patchGeneratedSection(CHANGED, TnsEntryDiff.compute(CHANGED, current)));
+		assertArrayEquals(edited, Files.readAllBytes(tnsNamesPath));
+	}
+
+	@Test
+	public void doesNotPatchFileModifiedWithOtherSize() throws IOException, AppException {
+		Path tnsAdminPath = createTnsAdmin("resized", GENERATED);
+		Path tnsNamesPath = tnsAdminPath.resolve(APP_TNSNAMES_FILENAME);
+
+		AppFileHandler handler = new AppFileHandler(tnsAdminPath);
+		List<TnsEntry> current = handler.getCurrentTnsEntryList();
+		byte[] edited = ("#\n" + new String(Files.readAllBytes(tnsNamesPath), StandardCharsets.ISO_8859_1))
+				.getBytes(StandardCharsets.ISO_8859_1);
+		Files.write(tnsNamesPath, edited);
+
+		assertFalse(handler.patchGeneratedSection(CHANGED, TnsEntryDiff.compute(CHANGED, current)));
+		assertArrayEquals(edited, Files.readAllBytes(tnsNamesPath));
+	}
+}
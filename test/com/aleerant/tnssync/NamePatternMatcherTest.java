@@ -0,0 +1,149 @@
+package com.aleerant.tnssync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class NamePatternMatcherTest {
+
+	private static NamePatternMatcher matcher(String... patterns) {
+		return new NamePatternMatcher(Arrays.asList(patterns));
+	}
+
+	@Test
+	public void recognizesPatterns() {
+		assertFalse(NamePatternMatcher.isPattern("DB1.EXAMPLE.COM"));
+		assertTrue(NamePatternMatcher.isPattern("DB*"));
+		assertTrue(NamePatternMatcher.isPattern("DB?"));
+		assertEquals(0, NamePatternMatcher.countWildcards("DB1"));
+		assertEquals(3, NamePatternMatcher.countWildcards("*DB?_*"));
+	}
+
+	@Test
+	public void matchesExactNamesIgnoringCase() {
+		NamePatternMatcher matcher = matcher("DB1", "db2.example.com");
+		assertTrue(matcher.matches("db1"));
+		assertTrue(matcher.matches("DB2.EXAMPLE.COM"));
+		assertFalse(matcher.matches("DB10"));
+		assertFalse(matcher.matches("DB"));
+		assertEquals(Collections.singletonList("DB1"), matcher.getMatchingPatterns("Db1"));
+	}
+
+	@Test
+	public void starMatchesAnySequence() {
+		NamePatternMatcher matcher = matcher("DB*");
+		assertTrue(matcher.matches("DB"));
+		assertTrue(matcher.matches("DB1"));
+		assertTrue(matcher.matches("db_prod.example.com"));
+		assertFalse(matcher.matches("XDB1"));
+		assertFalse(matcher.matches("D"));
+
+		NamePatternMatcher inner = matcher("DB*_RO");
+		assertTrue(inner.matches("DB_RO"));
+		assertTrue(inner.matches("DB1_X_RO"));
+		assertFalse(inner.matches("DB1_RW"));
+	}
+
+	@Test
+	public void questionMarkMatchesOneCharacter() {
+		NamePatternMatcher matcher = matcher("DB?");
+		assertTrue(matcher.matches("DB1"));
+		assertFalse(matcher.matches("DB"));
+		assertFalse(matcher.matches("DB12"));
+
+		NamePatternMatcher leading = matcher("?DB");
+		assertTrue(leading.matches("XDB"));
+		assertFalse(leading.matches("DB"));
+	}
+
+	@Test
+	public void treatsRegexCharactersAsLiterals() {
+		NamePatternMatcher matcher = matcher("DB1.EXAMPLE.*");
+		assertTrue(matcher.matches("DB1.EXAMPLE.COM"));
+		assertFalse(matcher.matches("DB1XEXAMPLE.COM"));
+		assertTrue(matcher("DB$*").matches("DB$1"));
+	}
+
+	@Test
+	public void findsPatternsOfEveryPrefixLength() {
+		// prefixes "", "D", "DB", "DB1" and "OTHER" in the prefix index
+		NamePatternMatcher matcher = matcher("*", "D?1", "DB*", "DB1*", "DB1", "OTHER*", "DB2?");
+		assertEquals(Arrays.asList("DB1", "*", "D?1", "DB*", "DB1*"), matcher.getMatchingPatterns("db1"));
+		assertEquals(Arrays.asList("*", "DB*", "DB2?"), matcher.getMatchingPatterns("DB21"));
+		assertEquals(Collections.singletonList("*"), matcher.getMatchingPatterns("X"));
+		assertTrue(matcher("OTHER*").getMatchingPatterns("DB1").isEmpty());
+	}
+
+	@Test
+	public void namesShorterThanPrefixDoNotMatch() {
+		NamePatternMatcher matcher = matcher("LONGPREFIX*");
+		assertFalse(matcher.matches("LONG"));
+		assertFalse(matcher.matches(""));
+		assertTrue(matcher.matches("LONGPREFIX"));
+	}
+
+	@Test
+	public void ignoresDuplicatePatterns() {
+		assertEquals(Collections.singletonList("DB*"), matcher("DB*", "db*").getMatchingPatterns("DB1"));
+	}
+
+	@Test
+	public void toLdapFilterValueWidensWildcards() {
+		assertEquals("DB1", NamePatternMatcher.toLdapFilterValue("DB1"));
+		assertEquals("DB*", NamePatternMatcher.toLdapFilterValue("DB*"));
+		assertEquals("DB*", NamePatternMatcher.toLdapFilterValue("DB?"));
+		assertEquals("*DB*X", NamePatternMatcher.toLdapFilterValue("?DB*?X"));
+		assertEquals("*", NamePatternMatcher.toLdapFilterValue("**"));
+	}
+
+	@Test
+	public void toLdapFilterValueEscapesMetacharacters() {
+		assertEquals("DB\\28A\\29", NamePatternMatcher.toLdapFilterValue("DB(A)"));
+		assertEquals("DB\\5c*", NamePatternMatcher.toLdapFilterValue("DB\\*"));
+		assertEquals("\\28*\\29*\\00", NamePatternMatcher.toLdapFilterValue("(*)?\u0000"));
+	}
+
+	@Test
+	public void expandsTemplate() {
+		NamePatternMatcher matcher = matcher("DB*_PROD", "??DB*");
+		assertEquals("DB1_RO", matcher.expand("DB*_PROD", "DB*_RO", "db1_prod"));
+		assertEquals("XY_DB1", matcher.expand("??DB*", "??_DB*", "XYDB1"));
+	}
+
+	@Test
+	public void expandsWildcardsInOrderRegardlessOfKind() {
+		assertEquals("XDB_Y1", matcher("??DB*").expand("??DB*", "*DB_??", "XYDB1"));
+		assertEquals("A-BCD", matcher("?*").expand("?*", "*-?", "abcd"));
+	}
+
+	@Test
+	public void returnsTemplateWithoutWildcardsAsIs() {
+		assertEquals("ALIAS", matcher("DB*").expand("DB*", "ALIAS", "DB1"));
+	}
+
+	@Test
+	public void returnsTemplateOfUnknownPatternOrNotMatchingName() {
+		NamePatternMatcher matcher = matcher("DB*");
+		assertEquals("X*", matcher.expand("OTHER*", "X*", "DB1"));
+		assertEquals("X*", matcher.expand("DB*", "X*", "OTHER1"));
+	}
+
+	@Test
+	public void keepsWildcardsOfTemplateBeyondPatternGroups() {
+		// tnssync.ora rejects such templates, the matcher keeps the extra wildcards
+		NamePatternMatcher matcher = matcher("DB*");
+		assertEquals("1_*", matcher.expand("DB*", "*_*", "DB1"));
+		assertEquals("1_?", matcher.expand("DB*", "*_?", "DB1"));
+	}
+
+	@Test
+	public void leavesOutPatternGroupsBeyondTemplateWildcards() {
+		NamePatternMatcher matcher = matcher("*_*");
+		assertEquals("A_RO", matcher.expand("*_*", "*_RO", "A_B"));
+	}
+}
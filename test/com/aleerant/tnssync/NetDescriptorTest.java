@@ -0,0 +1,127 @@
+package com.aleerant.tnssync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NetDescriptorTest {
+
+	private static void assertEquivalent(String one, String two) {
+		assertEquals(NetDescriptor.canonicalize(one), NetDescriptor.canonicalize(two));
+	}
+
+	private static void assertNotEquivalent(String one, String two) {
+		assertNotEquals(NetDescriptor.canonicalize(one), NetDescriptor.canonicalize(two));
+	}
+
+	@Test
+	public void removesWhitespaceAndUpperCasesKeywords() {
+		assertEquals("(DESCRIPTION=(ADDRESS=(HOST=h1)(PORT=1521)))",
+				NetDescriptor.canonicalize("  ( description = ( address = (host = h1 ) ( Port=1521 ) ) )\n"));
+	}
+
+	@Test
+	public void equivalentDescriptors() {
+		assertEquivalent("(DESCRIPTION=(ADDRESS=(PROTOCOL=TCP)(HOST=h1)(PORT=1521))(CONNECT_DATA=(SERVICE_NAME=s1)))",
+				"(DESCRIPTION =\n  (CONNECT_DATA = (service_name = s1))\n"
+						+ "  (ADDRESS = (PORT = 1521) (HOST = h1) (PROTOCOL = TCP))\n)");
+		assertEquivalent("(DESCRIPTION=(ADDRESS=(HOST=h1))(CONNECT_TIMEOUT=5)(RETRY_COUNT=3))",
+				"(DESCRIPTION=(RETRY_COUNT=3)(ADDRESS=(HOST=h1))(CONNECT_TIMEOUT=5))");
+	}
+
+	@Test
+	public void notEquivalentDescriptors() {
+		assertNotEquivalent("(DESCRIPTION=(ADDRESS=(HOST=h1)))", "(DESCRIPTION=(ADDRESS=(HOST=h2)))");
+		assertNotEquivalent("(DESCRIPTION=(ADDRESS=(HOST=h1)))", "(DESCRIPTION=(ADDRESS=(HOST=h1)(PORT=1521)))");
+		assertNotEquivalent("(DESCRIPTION=(CONNECT_DATA=(SERVICE_NAME=s1)))",
+				"(DESCRIPTION=(CONNECT_DATA=(SID=s1)))");
+	}
+
+	@Test
+	public void keepsCaseOfValues() {
+		assertNotEquivalent("(DESCRIPTION=(CONNECT_DATA=(SERVICE_NAME=s1)))",
+				"(DESCRIPTION=(CONNECT_DATA=(SERVICE_NAME=S1)))");
+	}
+
+	@Test
+	public void keepsQuotedValues() {
+		assertEquals("(DESCRIPTION=(SECURITY=(SSL_SERVER_CERT_DN=\"CN=db, O=(x)\")))",
+				NetDescriptor.canonicalize("(description=(security=(ssl_server_cert_dn=\"CN=db, O=(x)\")))"));
+		assertNotEquivalent("(A=(B=\"x  y\"))", "(A=(B=\"x y\"))");
+	}
+
+	@Test
+	public void keepsAddressOrder() {
+		// the order of the addresses is the order of the connect-time failover
+		assertNotEquivalent("(DESCRIPTION=(FAILOVER=ON)(ADDRESS=(HOST=h1))(ADDRESS=(HOST=h2)))",
+				"(DESCRIPTION=(FAILOVER=ON)(ADDRESS=(HOST=h2))(ADDRESS=(HOST=h1)))");
+		assertNotEquivalent(
+				"(DESCRIPTION=(ADDRESS_LIST=(LOAD_BALANCE=OFF)(ADDRESS=(HOST=h1))(ADDRESS=(HOST=h2))))",
+				"(DESCRIPTION=(ADDRESS_LIST=(LOAD_BALANCE=OFF)(ADDRESS=(HOST=h2))(ADDRESS=(HOST=h1))))");
+		assertNotEquivalent("(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS=(HOST=h1)))(DESCRIPTION=(ADDRESS=(HOST=h2))))",
+				"(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS=(HOST=h2)))(DESCRIPTION=(ADDRESS=(HOST=h1))))");
+	}
+
+	@Test
+	public void sortsOtherParametersAroundAddresses() {
+		assertEquals("(DESCRIPTION=(ADDRESS=(HOST=h2))(ADDRESS=(HOST=h1))(FAILOVER=ON)(LOAD_BALANCE=OFF))",
+				NetDescriptor.canonicalize(
+						"(DESCRIPTION=(LOAD_BALANCE=OFF)(ADDRESS=(HOST=h2))(FAILOVER=ON)(ADDRESS=(HOST=h1)))"));
+	}
+
+	@Test
+	public void addressAndAddressListShareSortKey() {
+		// ADDRESS_LIST is not moved behind the ADDRESS parameters, it is a failover step of its own
+		assertEquals("(DESCRIPTION=(ADDRESS_LIST=(ADDRESS=(HOST=h1)))(ADDRESS=(HOST=h2))(CONNECT_DATA=(SID=s1)))",
+				NetDescriptor.canonicalize(
+						"(DESCRIPTION=(CONNECT_DATA=(SID=s1))(ADDRESS_LIST=(ADDRESS=(HOST=h1)))(ADDRESS=(HOST=h2)))"));
+		assertNotEquivalent("(DESCRIPTION=(ADDRESS_LIST=(ADDRESS=(HOST=h1)))(ADDRESS=(HOST=h2)))",
+				"(DESCRIPTION=(ADDRESS=(HOST=h2))(ADDRESS_LIST=(ADDRESS=(HOST=h1))))");
+	}
+
+	@Test
+	public void descriptionAndDescriptionListShareSortKey() {
+		assertEquals("(X=(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS=(HOST=h1))))(DESCRIPTION=(ADDRESS=(HOST=h2)))(Z=1))",
+				NetDescriptor.canonicalize(
+						"(X=(Z=1)(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS=(HOST=h1))))(DESCRIPTION=(ADDRESS=(HOST=h2))))"));
+		assertNotEquivalent("(X=(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS=(HOST=h1))))(DESCRIPTION=(ADDRESS=(HOST=h2))))",
+				"(X=(DESCRIPTION=(ADDRESS=(HOST=h2)))(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS=(HOST=h1)))))");
+	}
+
+	@Test
+	public void keepsTopLevelOrder() {
+		assertEquals("(DESCRIPTION=(ADDRESS=(HOST=h2)))(DESCRIPTION=(ADDRESS=(HOST=h1)))",
+				NetDescriptor.canonicalize("(DESCRIPTION=(ADDRESS=(HOST=h2)))\n(DESCRIPTION=(ADDRESS=(HOST=h1)))"));
+	}
+
+	@Test
+	public void comparesUnparsableDescriptorsByTrimmedText() {
+		assertEquals("(DESCRIPTION=(ADDRESS=(HOST=h1))", NetDescriptor.canonicalize(" (DESCRIPTION=(ADDRESS=(HOST=h1)) "));
+		assertEquals("(DESCRIPTION=(ADDRESS=(HOST=h1))))",
+				NetDescriptor.canonicalize("(DESCRIPTION=(ADDRESS=(HOST=h1))))"));
+		assertEquals("simple_value", NetDescriptor.canonicalize("  simple_value "));
+		assertEquals("(=x)", NetDescriptor.canonicalize("(=x)"));
+		assertNotEquivalent("(description=(address=(host=h1))", "(DESCRIPTION=(ADDRESS=(HOST=h1))");
+	}
+
+	@Test
+	public void internsCanonicalForm() {
+		assertSame(NetDescriptor.canonicalize("(DESCRIPTION=(ADDRESS=(HOST=h1)))"),
+				NetDescriptor.canonicalize("(description = (address = (host = h1)))"));
+	}
+
+	@Test
+	public void tnsEntriesCompareByCanonicalForm() {
+		TnsEntry one = new TnsEntry("DB1", "(DESCRIPTION=(ADDRESS=(HOST=h1)(PORT=1521)))");
+		TnsEntry two = new TnsEntry("DB1", "(DESCRIPTION = (ADDRESS = (PORT = 1521) (HOST = h1)))");
+		assertTrue(one.hasSameNetDescription(two));
+		assertEquals(one, two);
+		assertEquals(one.hashCode(), two.hashCode());
+		assertFalse(one.hasSameNetDescription(new TnsEntry("DB1", "(DESCRIPTION=(ADDRESS=(HOST=h2)(PORT=1521)))")));
+		assertTrue(new TnsEntry("DB1_ALIAS", one).hasSameNetDescription(one));
+	}
+}
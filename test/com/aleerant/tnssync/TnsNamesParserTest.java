@@ -0,0 +1,174 @@
+package com.aleerant.tnssync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TnsNamesParserTest implements APPCONSTANT {
+
+	private static TnsNamesParser.Result parse(String text) {
+		return TnsNamesParser.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
+	@Test
+	public void parsesSimpleEntries() {
+		TnsNamesParser.Result result = parse("DB1 = (DESCRIPTION=(ADDRESS=(HOST=h1)(PORT=1521)))\n"
+				+ "DB2.EXAMPLE.COM=(DESCRIPTION=(ADDRESS=(HOST=h2)))\n");
+		List<TnsNamesParser.Entry> entries = result.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals("DB1", entries.get(0).getTnsEntry().getNetServiceName());
+		assertEquals("(DESCRIPTION=(ADDRESS=(HOST=h1)(PORT=1521)))", entries.get(0).getTnsEntry()
+				.getNetDescriptionString());
+		assertEquals("DB2.EXAMPLE.COM", entries.get(1).getTnsEntry().getNetServiceName());
+		assertEquals(-1, result.getCorruptOffset());
+	}
+
+	@Test
+	public void skipsCommentLinesBetweenAndInsideEntries() {
+		String text = "# header comment\n"
+				+ "DB1 =\n"
+				+ "  (DESCRIPTION =\n"
+				+ "    # the primary\n"
+				+ "    (ADDRESS = (HOST = h1))\n"
+				+ "  ) # trailing comment\n"
+				+ "   # indented comment\n"
+				+ "DB2 = (DESCRIPTION=(ADDRESS=(HOST=h2)))\n";
+		TnsNamesParser.Result result = parse(text);
+		List<TnsNamesParser.Entry> entries = result.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals("(DESCRIPTION =(ADDRESS = (HOST = h1)))", entries.get(0).getTnsEntry()
+				.getNetDescriptionString());
+		assertEquals("DB2", entries.get(1).getTnsEntry().getNetServiceName());
+		assertEquals(-1, result.getCorruptOffset());
+	}
+
+	@Test
+	public void sharesDescriptorOfMoreNames() {
+		List<TnsNamesParser.Entry> entries = parse("DB1, DB1_ALIAS = (DESCRIPTION=(ADDRESS=(HOST=h1)))\n")
+				.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals("DB1_ALIAS", entries.get(1).getTnsEntry().getNetServiceName());
+		assertTrue(entries.get(0).getTnsEntry().hasSameNetDescription(entries.get(1).getTnsEntry()));
+		assertEquals(entries.get(0).getStartOffset(), entries.get(1).getStartOffset());
+	}
+
+	@Test
+	public void parsesNestedParentheses() {
+		String descriptor = "(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS_LIST=(FAILOVER=ON)(ADDRESS=(HOST=h1))"
+				+ "(ADDRESS=(HOST=h2)))(CONNECT_DATA=(SERVICE_NAME=s1))))";
+		List<TnsNamesParser.Entry> entries = parse("DB1 = " + descriptor + "\n").getEntries();
+		assertEquals(1, entries.size());
+		assertEquals(descriptor, entries.get(0).getTnsEntry().getNetDescriptionString());
+	}
+
+	@Test
+	public void reportsUnclosedParenthesis() {
+		String text = "DB1 = (DESCRIPTION=(ADDRESS=(HOST=h1))\n";
+		TnsNamesParser.Result result = parse(text);
+		assertTrue(result.getEntries().isEmpty());
+		assertEquals(0, result.getCorruptOffset());
+	}
+
+	@Test
+	public void reportsExtraClosingParenthesisAndGoesOn() {
+		String corrupt = "DB1 = (DESCRIPTION=(ADDRESS=(HOST=h1))))\n";
+		TnsNamesParser.Result result = parse(corrupt + "DB2 = (DESCRIPTION=(ADDRESS=(HOST=h2)))\n");
+		assertEquals(1, result.getEntries().size());
+		assertEquals("DB2", result.getEntries().get(0).getTnsEntry().getNetServiceName());
+		assertEquals(0, result.getCorruptOffset());
+		assertEquals(corrupt.length(), result.getEntries().get(0).getStartOffset());
+	}
+
+	@Test
+	public void reportsCorruptAutoSection() {
+		String manual = "DB1 = (DESCRIPTION=(ADDRESS=(HOST=h1)))\n";
+		String text = manual + APP_AUTO_SECTION_MARK + "\nDB2 = (DESCRIPTION=(ADDRESS=(HOST=h2))\n";
+		TnsNamesParser.Result result = parse(text);
+		assertTrue(result.hasAutoSection());
+		assertTrue(result.isAutoSectionCorrupt());
+		assertEquals(manual.length() + APP_AUTO_SECTION_MARK.length() + 1, result.getCorruptOffset());
+	}
+
+	@Test
+	public void findsAutoSection() {
+		String manual = "DB1 = (DESCRIPTION=(ADDRESS=(HOST=h1)))\n# a comment\n";
+		String text = manual + APP_AUTO_SECTION_MARK + " - do not edit\nDB2 = (DESCRIPTION=(ADDRESS=(HOST=h2)))\n";
+		TnsNamesParser.Result result = parse(text);
+		assertTrue(result.hasAutoSection());
+		assertFalse(result.isAutoSectionCorrupt());
+		assertEquals(manual.length(), result.getAutoSectionStart());
+		assertEquals(manual.length(), result.getManualSectionEnd());
+		assertEquals(2, result.getEntries().size());
+		assertFalse(result.getEntries().get(0).isAutoSection());
+		assertTrue(result.getEntries().get(1).isAutoSection());
+		assertEquals(1, result.getAutoSectionTnsEntries().size());
+		assertEquals("DB2", result.getAutoSectionTnsEntries().get(0).getNetServiceName());
+	}
+
+	@Test
+	public void findsIndentedAutoSectionMark() {
+		String manual = "DB1 = (DESCRIPTION=(ADDRESS=(HOST=h1)))\n";
+		TnsNamesParser.Result result = parse(manual + " \t" + APP_AUTO_SECTION_MARK + "\n");
+		assertTrue(result.hasAutoSection());
+		assertEquals(manual.length(), result.getAutoSectionStart());
+	}
+
+	@Test
+	public void withoutMarkAllEntriesAreManual() {
+		String text = "DB1 = (DESCRIPTION=(ADDRESS=(HOST=h1)))\n# AUTO-GENERATED\nDB2 = (DESCRIPTION=(ADDRESS=(HOST=h2)))";
+		TnsNamesParser.Result result = parse(text);
+		assertFalse(result.hasAutoSection());
+		assertEquals(-1, result.getAutoSectionStart());
+		assertEquals(text.length(), result.getManualSectionEnd());
+		assertEquals(2, result.getEntries().size());
+		assertTrue(result.getAutoSectionTnsEntries().isEmpty());
+		assertEquals(text.length(), result.getEntries().get(1).getEndOffset());
+	}
+
+	@Test
+	public void parsesCrlfLineEnds() {
+		String first = "DB1 =\r\n  (DESCRIPTION =\r\n    (ADDRESS = (HOST = h1))\r\n  )\r\n";
+		String manual = first + "DB2 = (DESCRIPTION=(ADDRESS=(HOST=h2)))\r\n";
+		TnsNamesParser.Result result = parse(manual + APP_AUTO_SECTION_MARK + "\r\nDB3 = simple_value\r\n");
+		List<TnsNamesParser.Entry> entries = result.getEntries();
+		assertEquals(3, entries.size());
+		assertEquals("(DESCRIPTION =(ADDRESS = (HOST = h1)))", entries.get(0).getTnsEntry().getNetDescriptionString());
+		assertEquals(0, entries.get(0).getStartOffset());
+		assertEquals(first.length(), entries.get(0).getEndOffset());
+		assertEquals(first.length(), entries.get(1).getStartOffset());
+		assertEquals(manual.length(), result.getAutoSectionStart());
+		assertEquals("simple_value", entries.get(2).getTnsEntry().getNetDescriptionString());
+		assertTrue(entries.get(2).isAutoSection());
+		assertEquals(-1, result.getCorruptOffset());
+	}
+
+	@Test
+	public void readsFileLargerThanReadChunk() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int count = 0;
+		while (sb.length() < 200 * 1024) {
+			sb.append("DB").append(count++).append(" = (DESCRIPTION=(ADDRESS=(HOST=h")
+					.append(count).append(")(PORT=1521)))\r\n");
+		}
+		Path path = Files.createTempFile("tnsnames", ".ora");
+		try {
+			Files.write(path, sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+			TnsNamesParser.Result result = TnsNamesParser.parse(path);
+			assertEquals(sb.length(), result.getLength());
+			assertEquals(count, result.getEntries().size());
+			assertEquals("DB" + (count - 1), result.getEntries().get(count - 1).getTnsEntry().getNetServiceName());
+			assertEquals(-1, result.getCorruptOffset());
+		} finally {
+			Files.delete(path);
+		}
+	}
+}